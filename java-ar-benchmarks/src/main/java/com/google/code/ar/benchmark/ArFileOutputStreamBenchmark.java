@@ -0,0 +1,81 @@
+package com.google.code.ar.benchmark;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.ar.ArEntry;
+import com.google.code.ar.ArFileOutputStream;
+import com.google.code.ar.SyncMode;
+
+/**
+ * Writes into the temporary file without forcing data to the storage device, so results are not bound by the device.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArFileOutputStreamBenchmark {
+
+    @Param
+    private Shape shape;
+
+    private ArEntry[] entries;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        entries = shape.createEntries();
+        file = Files.createTempFile("benchmark", ".a");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void putNextEntry(Counters counters) throws IOException {
+        ArFileOutputStream afos = new ArFileOutputStream(file.toString(), SyncMode.NONE);
+        for (ArEntry cur : entries) {
+            afos.putNextEntry(cur);
+            afos.write(cur.getData());
+            afos.closeEntry();
+        }
+        afos.close();
+        counters.add(shape);
+    }
+
+}
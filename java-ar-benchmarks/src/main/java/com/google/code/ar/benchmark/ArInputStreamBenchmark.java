@@ -0,0 +1,91 @@
+package com.google.code.ar.benchmark;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.code.ar.ArEntry;
+import com.google.code.ar.ArInputStream;
+import com.google.code.ar.ArOutputStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArInputStreamBenchmark {
+
+    @Param
+    private Shape shape;
+
+    private byte[] archive;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArOutputStream aros = new ArOutputStream(baos);
+        aros.setEntries(shape.createEntries());
+        aros.close();
+        archive = baos.toByteArray();
+        buffer = new byte[64 * 1024];
+    }
+
+    @Benchmark
+    public void getNextEntry(Counters counters, Blackhole blackhole) throws IOException {
+        ArInputStream aris = new ArInputStream(new ByteArrayInputStream(archive));
+        ArEntry cur;
+        while ((cur = aris.getNextEntry()) != null) {
+            blackhole.consume(cur.getData());
+        }
+        aris.close();
+        counters.add(shape);
+    }
+
+    @Benchmark
+    public void streaming(Counters counters, Blackhole blackhole) throws IOException {
+        ArInputStream aris = new ArInputStream(new ByteArrayInputStream(archive), true);
+        ArEntry cur;
+        while ((cur = aris.getNextEntry()) != null) {
+            int read;
+            while ((read = aris.read(buffer)) != -1) {
+                blackhole.consume(read);
+            }
+            blackhole.consume(cur);
+        }
+        aris.close();
+        counters.add(shape);
+    }
+
+}
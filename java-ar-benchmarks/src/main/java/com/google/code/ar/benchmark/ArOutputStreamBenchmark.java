@@ -0,0 +1,80 @@
+package com.google.code.ar.benchmark;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.ar.ArEntry;
+import com.google.code.ar.ArOutputStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArOutputStreamBenchmark {
+
+    @Param
+    private Shape shape;
+
+    private ArEntry[] entries;
+
+    @Setup
+    public void setup() {
+        entries = shape.createEntries();
+    }
+
+    @Benchmark
+    public void setEntries(Counters counters) throws IOException {
+        ArOutputStream aros = new ArOutputStream(OutputStream.nullOutputStream());
+        aros.setEntries(entries);
+        aros.close();
+        counters.add(shape);
+    }
+
+    @Benchmark
+    public void putNextEntry(Counters counters) throws IOException {
+        ArOutputStream aros = new ArOutputStream(OutputStream.nullOutputStream());
+        String[] filenames = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            filenames[i] = entries[i].getFilename();
+        }
+        aros.setLongFileNames(filenames);
+        for (ArEntry cur : entries) {
+            aros.putNextEntry(cur, cur.getData().length);
+            aros.write(cur.getData());
+        }
+        aros.close();
+        counters.add(shape);
+    }
+
+}
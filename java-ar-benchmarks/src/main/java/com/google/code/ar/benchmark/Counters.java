@@ -0,0 +1,49 @@
+package com.google.code.ar.benchmark;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reports processed entry data and entries as secondary rates. bytes/s of this counter is the benchmark throughput. 
+ * Allocations per entry are gc.alloc.rate.norm divided by entries per operation.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Counters {
+
+    public long bytes;
+    public long entries;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        entries = 0;
+    }
+
+    void add(Shape shape) {
+        bytes += shape.getDataSize();
+        entries += shape.getCount();
+    }
+}
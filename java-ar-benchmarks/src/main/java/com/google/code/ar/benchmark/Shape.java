@@ -0,0 +1,81 @@
+package com.google.code.ar.benchmark;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.code.ar.ArEntry;
+
+/**
+ * Data shapes used by the benchmarks
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public enum Shape {
+
+    /**
+     * Many tiny members. Dominated by header parsing and encoding
+     */
+    TINY(10000, 16, "o"),
+    /**
+     * Few huge members. Dominated by data copying
+     */
+    HUGE(4, 16 * 1024 * 1024, "o"),
+    /**
+     * File names longer than 16 bytes. Requires GNU long file names table
+     */
+    LONG_NAMES(1000, 1024, "object_file_with_long_name.o"),
+    /**
+     * Odd-length members. Every member is followed by the padding byte
+     */
+    ODD(1000, 1023, "o");
+
+    private final int count;
+    private final int size;
+    private final String suffix;
+
+    private Shape(int count, int size, String suffix) {
+        this.count = count;
+        this.size = size;
+        this.suffix = suffix;
+    }
+
+    public ArEntry[] createEntries() {
+        ArEntry[] result = new ArEntry[count];
+        for (int i = 0; i < count; i++) {
+            byte[] data = new byte[size];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (byte) (i + j);
+            }
+            result[i] = new ArEntry();
+            result[i].setFilename(i + "_" + suffix);
+            result[i].setFileMode(100644);
+            result[i].setData(data);
+        }
+        return result;
+    }
+
+    /**
+     * @return total size of entries data
+     */
+    public long getDataSize() {
+        return (long) count * size;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,70 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Part of entry data published by <code>com.google.code.ar.AsyncArReader</code>. Every entry is published as one or more chunks. 
+ * Entries without data are published as a single empty chunk.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArChunk {
+
+    private final ArEntry entry;
+    private final long offset;
+    private final ByteBuffer data;
+    private final boolean last;
+
+    ArChunk(ArEntry entry, long offset, ByteBuffer data, boolean last) {
+        this.entry = entry;
+        this.offset = offset;
+        this.data = data;
+        this.last = last;
+    }
+
+    /**
+     * Entry header. The same instance is used for all chunks of the entry. ArEntry.getData() is null
+     */
+    public ArEntry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Offset of this chunk from the beginning of entry data. 0 for the first chunk of the entry
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Chunk data. Buffer is not reused and could be retained by subscriber
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * @return true if this is the last chunk of the entry
+     */
+    public boolean isLast() {
+        return last;
+    }
+
+}
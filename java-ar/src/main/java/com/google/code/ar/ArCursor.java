@@ -0,0 +1,258 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reusable cursor over AR stream. Cursor doesn't allocate per entry: header fields are parsed into primitives and 
+ * file name is kept as raw bytes until it is requested. Use it to scan metadata of the archives with many entries:
+ * 
+ * <blockquote><pre>
+ * ArCursor cursor = new ArCursor(is);
+ * try {
+ *      while (cursor.next()) {
+ *          if (cursor.filenameEquals("control.tar.gz")) {
+ *              //read cursor.getSize() bytes using cursor.read()
+ *          }
+ *      }
+ * } finally {
+ *      cursor.close();
+ * }
+ * </pre></blockquote>
+ * 
+ * GNU long file names table is handled internally and not returned.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArCursor implements Closeable {
+
+    private final InputStream in;
+    private final byte[] header = new byte[ArHeaders.HEADER_LENGTH];
+    private LongFileNames longFileNames;
+    private boolean isClosed = false;
+    private long position = 0;
+    private long remaining = 0;
+    private boolean isPadded = false;
+
+    private long headerOffset = -1;
+    private long size;
+    private long timestamp;
+    private int ownerId;
+    private int groupId;
+    private int fileMode;
+    private final ArHeaders.Filename filename = new ArHeaders.Filename();
+
+    /**
+     * @param in - underlying InputStream. Closed on close()
+     * @throws IOException if provided stream is not AR stream
+     * @throws IllegalArgumentException if provided stream is null
+     */
+    public ArCursor(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("input stream cannot be null");
+        }
+        this.in = in;
+        byte[] signature = new byte[ArHeaders.SIGNATURE_LENGTH];
+        if (readFully(signature) != signature.length) {
+            throw new IOException("not an \"AR\" archive");
+        }
+        ArHeaders.checkSignature(signature);
+    }
+
+    /**
+     * Moves cursor to the next entry. Unread data of the current entry is skipped.
+     * @return false if end of stream reached
+     * @throws IOException if cursor has been closed or the underlying stream is corrupted
+     */
+    public boolean next() throws IOException {
+        if (isClosed) {
+            throw new IOException("cursor closed");
+        }
+        while (true) {
+            position += ArStreams.skipEntry(in, remaining, isPadded);
+            remaining = 0;
+            isPadded = false;
+
+            long curHeaderOffset = position;
+            int read = readFully(header);
+            if (read == 0) {
+                headerOffset = -1;
+                return false;
+            }
+            if (read != header.length) {
+                throw new IOException("unexpected end of stream. Expected: " + header.length + ". Read: " + read);
+            }
+            long curSize = ArHeaders.parseSize(header);
+            remaining = curSize;
+            isPadded = curSize % 2 == 1;
+            long curTimestamp = ArHeaders.parseTimestamp(header);
+            ArHeaders.parseFilename(header, longFileNames, filename);
+            if (curTimestamp == 0 && filename.equals(ArHeaders.LONG_FILE_NAMES)) {
+                readLongFileNames(curSize);
+                continue;
+            }
+            headerOffset = curHeaderOffset;
+            size = curSize;
+            timestamp = curTimestamp;
+            ownerId = ArHeaders.parseOwnerId(header);
+            groupId = ArHeaders.parseGroupId(header);
+            fileMode = ArHeaders.parseFileMode(header);
+            return true;
+        }
+    }
+
+    /**
+     * Reads data of the current entry.
+     * @return -1 when the end of the current entry is reached
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+        int result = in.read(b, off, (int) Math.min(len, remaining));
+        if (result == -1) {
+            throw new IOException("unexpected end of stream. Expected: " + remaining + ". Read: 0");
+        }
+        remaining -= result;
+        position += result;
+        return result;
+    }
+
+    /**
+     * @return file data size in bytes as declared in the entry header
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return file modification timestamp in milliseconds. Same as ArEntry.getFileModificationTimestamp()
+     */
+    public long getFileModificationTimestamp() {
+        return timestamp * 1000;
+    }
+
+    public int getOwnerId() {
+        return ownerId;
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    public int getFileMode() {
+        return fileMode;
+    }
+
+    /**
+     * @return offset of the entry header from the beginning of archive. -1 if cursor is not positioned on the entry
+     */
+    public long getHeaderOffset() {
+        return headerOffset;
+    }
+
+    /**
+     * @return offset of the entry data from the beginning of archive
+     */
+    public long getDataOffset() {
+        return headerOffset + ArHeaders.HEADER_LENGTH;
+    }
+
+    /**
+     * @return length of the file name in bytes
+     */
+    public int getFilenameLength() {
+        return filename.getLength();
+    }
+
+    /**
+     * Copies file name bytes.
+     * @param dst - destination. Should have at least getFilenameLength() bytes available after offset
+     * @param offset - offset in the destination
+     * @return number of copied bytes
+     */
+    public int getFilename(byte[] dst, int offset) {
+        return filename.copy(dst, offset);
+    }
+
+    /**
+     * Compares file name without decoding it.
+     * @param filename - ASCII file name
+     * @return true if file name of the current entry equals to the provided
+     */
+    public boolean filenameEquals(String filename) {
+        return this.filename.equals(filename);
+    }
+
+    /**
+     * Decodes file name. Allocates new String on every call
+     */
+    public String getFilename() {
+        return filename.decode();
+    }
+
+    /**
+     * @return header of the current entry as new ArEntry. ArEntry.data is not loaded
+     */
+    public ArEntry toEntry() {
+        ArEntry result = new ArEntry();
+        result.setFilename(getFilename());
+        result.setFileModificationTimestamp(getFileModificationTimestamp());
+        result.setOwnerId(ownerId);
+        result.setGroupId(groupId);
+        result.setFileMode(fileMode);
+        result.setSize(size);
+        result.setHeaderOffset(headerOffset);
+        result.setDataOffset(getDataOffset());
+        return result;
+    }
+
+    /**
+     * Closes underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        in.close();
+    }
+
+    private void readLongFileNames(long tableSize) throws IOException {
+        if (tableSize > Integer.MAX_VALUE) {
+            throw new IOException("corrupted archive data. invalid long file names size: " + tableSize);
+        }
+        byte[] data = new byte[(int) tableSize];
+        if (readFully(data) != data.length) {
+            throw new IOException("unexpected end of stream. Expected: " + data.length);
+        }
+        remaining = 0;
+        longFileNames = new LongFileNames(data);
+    }
+
+    private int readFully(byte[] b) throws IOException {
+        int result = ArStreams.readFully(in, b, 0, b.length);
+        position += result;
+        return result;
+    }
+
+}
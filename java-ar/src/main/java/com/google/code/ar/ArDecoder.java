@@ -0,0 +1,189 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental push-style AR decoder. Accepts buffers of any size, including buffers which split entry header or data,
+ * and reports decoded entries to the <code>com.google.code.ar.ArDecoderListener</code>. Entry data is passed as views 
+ * of the input buffers without copying. Only partial header is kept between decode calls. The exception is GNU long file 
+ * names table which is kept in memory until the end of archive. Normal scenario:
+ * 
+ * <blockquote><pre>
+ * ArDecoder decoder = new ArDecoder(listener);
+ * while( (buffer = nextBuffer()) != null ) {
+ *      decoder.decode(buffer);
+ * }
+ * decoder.finish();
+ * </pre></blockquote>
+ * 
+ * Supports only GNU compatible AR data. Decoder is not thread-safe.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArDecoder {
+
+    private enum State {
+        SIGNATURE, HEADER, LONG_FILE_NAMES, DATA, PADDING
+    }
+
+    private final ArDecoderListener listener;
+    private final byte[] signature = new byte[ArHeaders.SIGNATURE_LENGTH];
+    private final byte[] header = new byte[ArHeaders.HEADER_LENGTH];
+    private State state = State.SIGNATURE;
+    private int headerLength = 0;
+    private long position = 0;
+    private ArEntry curEntry;
+    private long curEntryRemaining;
+    private byte[] longFileNamesData;
+    private LongFileNames longFileNames;
+
+    /**
+     * @param listener - receives decoded entries
+     * @throws IllegalArgumentException if listener is null
+     */
+    public ArDecoder(ArDecoderListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        this.listener = listener;
+    }
+
+    /**
+     * Decodes all remaining bytes of the buffer. Buffer position is moved to its limit.
+     * @param input - next part of AR archive
+     * @throws IOException if archive is corrupted or listener failed
+     */
+    public void decode(ByteBuffer input) throws IOException {
+        while (input.hasRemaining()) {
+            switch (state) {
+            case SIGNATURE:
+                if (fill(input, signature)) {
+                    ArHeaders.checkSignature(signature);
+                    headerLength = 0;
+                    state = State.HEADER;
+                }
+                break;
+            case HEADER:
+                if (fill(input, header)) {
+                    headerLength = 0;
+                    startEntry();
+                }
+                break;
+            case LONG_FILE_NAMES:
+                int toCopy = (int) Math.min(curEntryRemaining, input.remaining());
+                input.get(longFileNamesData, (int) (curEntry.getSize() - curEntryRemaining), toCopy);
+                consumed(toCopy);
+                if (curEntryRemaining == 0) {
+                    longFileNames = new LongFileNames(longFileNamesData);
+                    longFileNamesData = null;
+                    endEntry(false);
+                }
+                break;
+            case DATA:
+                int length = (int) Math.min(curEntryRemaining, input.remaining());
+                ByteBuffer data = input.slice();
+                data.limit(length);
+                input.position(input.position() + length);
+                consumed(length);
+                listener.onData(curEntry, data.asReadOnlyBuffer());
+                if (curEntryRemaining == 0) {
+                    endEntry(true);
+                }
+                break;
+            case PADDING:
+                input.get();
+                position++;
+                state = State.HEADER;
+                break;
+            default:
+                throw new IllegalStateException("unknown state: " + state);
+            }
+        }
+    }
+
+    /**
+     * Verifies that archive is complete. Should be called after the last buffer. Last entry might be written without padding.
+     * @throws IOException if archive ended in the middle of header or entry data
+     */
+    public void finish() throws IOException {
+        if (state == State.SIGNATURE) {
+            throw new IOException("unexpected end of stream. Expected: " + ArHeaders.SIGNATURE_LENGTH + ". Read: " + headerLength);
+        }
+        if (state == State.PADDING) {
+            state = State.HEADER;
+        }
+        if (state != State.HEADER || headerLength != 0) {
+            throw new IOException("unexpected end of stream. archive ended at: " + position);
+        }
+    }
+
+    private void startEntry() throws IOException {
+        curEntry = ArHeaders.parse(header, longFileNames);
+        curEntry.setHeaderOffset(position - ArHeaders.HEADER_LENGTH);
+        curEntry.setDataOffset(position);
+        curEntryRemaining = curEntry.getSize();
+        if (ArHeaders.isLongFileNames(curEntry)) {
+            if (curEntry.getSize() > Integer.MAX_VALUE) {
+                throw new IOException("corrupted archive data. invalid long file names size: " + curEntry.getSize());
+            }
+            longFileNamesData = new byte[(int) curEntry.getSize()];
+            if (curEntryRemaining == 0) {
+                longFileNames = new LongFileNames(longFileNamesData);
+                longFileNamesData = null;
+                endEntry(false);
+            } else {
+                state = State.LONG_FILE_NAMES;
+            }
+            return;
+        }
+        listener.onEntry(curEntry);
+        if (curEntryRemaining == 0) {
+            endEntry(true);
+        } else {
+            state = State.DATA;
+        }
+    }
+
+    private void endEntry(boolean notify) throws IOException {
+        if (curEntry.getSize() % 2 == 1) {
+            state = State.PADDING;
+        } else {
+            state = State.HEADER;
+        }
+        if (notify) {
+            listener.onEntryEnd(curEntry);
+        }
+    }
+
+    private boolean fill(ByteBuffer input, byte[] dst) {
+        int toCopy = Math.min(dst.length - headerLength, input.remaining());
+        input.get(dst, headerLength, toCopy);
+        headerLength += toCopy;
+        position += toCopy;
+        return headerLength == dst.length;
+    }
+
+    private void consumed(int length) {
+        curEntryRemaining -= length;
+        position += length;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives events from <code>com.google.code.ar.ArDecoder</code>. Events are delivered in the order: 
+ * onEntry, zero or more onData, onEntryEnd.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public interface ArDecoderListener {
+
+    /**
+     * Called when entry header is decoded
+     * @param entry - entry header. ArEntry.getData() is null
+     * @throws IOException to stop decoding
+     */
+    void onEntry(ArEntry entry) throws IOException;
+
+    /**
+     * Called for every part of the entry data
+     * @param entry - current entry
+     * @param data - read-only view of the decoded buffer. Valid only during this call. Should be copied if required later
+     * @throws IOException to stop decoding
+     */
+    void onData(ArEntry entry, ByteBuffer data) throws IOException;
+
+    /**
+     * Called when all entry data has been decoded
+     * @param entry - current entry
+     * @throws IOException to stop decoding
+     */
+    void onEntryEnd(ArEntry entry) throws IOException;
+
+}
@@ -0,0 +1,113 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Computes entry digests while entry data is read or written. Supports "CRC32", "CRC32C" and any MessageDigest algorithm 
+ * i.e. "SHA-256". Checksums are returned as 4 bytes in big-endian order.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class ArDigests {
+
+    private final String[] algorithms;
+    private final Checksum[] checksums;
+    private final MessageDigest[] digests;
+
+    /**
+     * @throws IllegalArgumentException if algorithm is not supported
+     */
+    ArDigests(String[] algorithms) {
+        if (algorithms == null || algorithms.length == 0) {
+            throw new IllegalArgumentException("algorithms should be specified");
+        }
+        this.algorithms = algorithms.clone();
+        this.checksums = new Checksum[algorithms.length];
+        this.digests = new MessageDigest[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            if ("CRC32C".equals(algorithms[i])) {
+                checksums[i] = new CRC32C();
+            } else if ("CRC32".equals(algorithms[i])) {
+                checksums[i] = new CRC32();
+            } else {
+                try {
+                    digests[i] = MessageDigest.getInstance(algorithms[i]);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalArgumentException("unsupported digest algorithm: " + algorithms[i], e);
+                }
+            }
+        }
+    }
+
+    void update(int b) {
+        for (int i = 0; i < algorithms.length; i++) {
+            if (checksums[i] != null) {
+                checksums[i].update(b);
+            } else {
+                digests[i].update((byte) b);
+            }
+        }
+    }
+
+    void update(byte[] b, int off, int len) {
+        for (int i = 0; i < algorithms.length; i++) {
+            if (checksums[i] != null) {
+                checksums[i].update(b, off, len);
+            } else {
+                digests[i].update(b, off, len);
+            }
+        }
+    }
+
+    /**
+     * @return digests by algorithm. Digests are reset for the next entry
+     */
+    Map<String, byte[]> finish() {
+        Map<String, byte[]> result = new LinkedHashMap<String, byte[]>(algorithms.length * 2);
+        for (int i = 0; i < algorithms.length; i++) {
+            if (checksums[i] != null) {
+                result.put(algorithms[i], ByteBuffer.allocate(4).putInt((int) checksums[i].getValue()).array());
+                checksums[i].reset();
+            } else {
+                result.put(algorithms[i], digests[i].digest());
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    void reset() {
+        for (int i = 0; i < algorithms.length; i++) {
+            if (checksums[i] != null) {
+                checksums[i].reset();
+            } else {
+                digests[i].reset();
+            }
+        }
+    }
+
+}
@@ -16,6 +16,8 @@ package com.google.code.ar;
  * limitations under the License.
  */
 
+import java.util.Map;
+
 /**
  * Represents one entry for AR archive. 
  * 
@@ -29,10 +31,14 @@ public class ArEntry {
     private int ownerId;
     private int groupId;
     private int fileMode;
+    private long size;
+    private long headerOffset = -1;
+    private long dataOffset = -1;
     private byte[] data;
+    private Map<String, byte[]> digests;
 
     /**
-     * File data. Couldnt be null, but could be empty (byte[0])
+     * File data. Couldnt be null, but could be empty (byte[0]). Is null for entries read by ArInputStream in streaming mode.
      */
     public byte[] getData() {
         return data;
@@ -60,7 +66,10 @@ public class ArEntry {
         return fileModificationTimestamp;
     }
 
-    void setFileModificationTimestamp(long fileModificationTimestamp) {
+    /**
+     * Timestamp is stored with seconds precision. If not set, writers use the current time or 0 in deterministic mode
+     */
+    public void setFileModificationTimestamp(long fileModificationTimestamp) {
         this.fileModificationTimestamp = fileModificationTimestamp;
     }
 
@@ -100,4 +109,58 @@ public class ArEntry {
         this.fileMode = fileMode;
     }
 
+    /**
+     * File data size in bytes as declared in the entry header.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * Offset of the entry header from the beginning of archive. -1 if entry wasn't read from archive
+     */
+    public long getHeaderOffset() {
+        return headerOffset;
+    }
+
+    void setHeaderOffset(long headerOffset) {
+        this.headerOffset = headerOffset;
+    }
+
+    /**
+     * Offset of the entry data from the beginning of archive. -1 if entry wasn't read from archive
+     */
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    void setDataOffset(long dataOffset) {
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Digest of the entry data computed while entry was read or written. See setDigestAlgorithms of ArInputStream, 
+     * ArOutputStream and ArFileOutputStream
+     * @param algorithm - digest algorithm. i.e. "CRC32C" or "SHA-256"
+     * @return null if digest wasn't computed or entry data wasn't fully read
+     */
+    public byte[] getDigest(String algorithm) {
+        if (digests == null) {
+            return null;
+        }
+        byte[] result = digests.get(algorithm);
+        if (result == null) {
+            return null;
+        }
+        return result.clone();
+    }
+
+    void setDigests(Map<String, byte[]> digests) {
+        this.digests = digests;
+    }
+
 }
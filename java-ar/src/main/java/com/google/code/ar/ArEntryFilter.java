@@ -0,0 +1,33 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Filter for entries read by <code>com.google.code.ar.ArInputStream</code>. Data of rejected entries is skipped without reading.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public interface ArEntryFilter {
+
+    /**
+     * @param entry - entry header. ArEntry.getData() is null
+     * @return true if entry should be returned
+     */
+    boolean accept(ArEntry entry);
+
+}
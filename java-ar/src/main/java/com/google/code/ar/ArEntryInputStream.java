@@ -0,0 +1,95 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads entry data using positional reads. Doesn't change channel position.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class ArEntryInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long end;
+    private final byte[] singleByte = new byte[1];
+    private long position;
+    private boolean isClosed = false;
+
+    ArEntryInputStream(FileChannel channel, long dataOffset, long size) {
+        this.channel = channel;
+        this.position = dataOffset;
+        this.end = dataOffset + size;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int readBytes = read(singleByte, 0, 1);
+        if (readBytes == -1) {
+            return -1;
+        }
+        return singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (isClosed) {
+            throw new IOException("stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        int readBytes = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+        if (readBytes == -1) {
+            throw new IOException("unexpected end of file. Expected: " + (end - position) + ". Read: 0");
+        }
+        position += readBytes;
+        return readBytes;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skippedBytes = Math.min(n, end - position);
+        position += skippedBytes;
+        return skippedBytes;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    /**
+     * Doesn't close underlying channel
+     */
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+    }
+
+}
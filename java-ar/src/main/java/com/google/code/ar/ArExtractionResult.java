@@ -0,0 +1,62 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of parallel extraction. Extraction doesn't stop on the first failed entry, 
+ * so result contains both extracted entries and per entry errors.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArExtractionResult {
+
+    private final List<ArEntry> extracted;
+    private final Map<ArEntry, IOException> errors;
+
+    ArExtractionResult(List<ArEntry> extracted, Map<ArEntry, IOException> errors) {
+        this.extracted = Collections.unmodifiableList(extracted);
+        this.errors = Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Successfully extracted entries in archive order
+     */
+    public List<ArEntry> getExtracted() {
+        return extracted;
+    }
+
+    /**
+     * Entries which were not extracted and corresponding errors
+     */
+    public Map<ArEntry, IOException> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return true if all entries were extracted
+     */
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+
+}
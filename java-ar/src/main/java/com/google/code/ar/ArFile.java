@@ -0,0 +1,449 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Random access to AR archive entries. In comparison to <code>com.google.code.ar.ArInputStream</code> only entry headers are read on open. 
+ * Entry data is read on demand using positional reads, so several threads could read different entries of the same ArFile concurrently.
+ * Normal scenario:
+ * 
+ * <blockquote><pre>
+ * ArFile arFile = null;
+ * try {
+ *      arFile = new ArFile("archive.a");
+ *      ArEntry entry = arFile.getEntry("control.tar.gz");
+ *      InputStream is = arFile.getInputStream(entry);
+ *      //read entry data
+ * } catch(Exception e) {
+ *  //do logging. handle exception
+ * } finally {
+ *      if( arFile != null ) {
+ *          try {
+ *              arFile.close();
+ *          } catch(IOException e) {
+ *              //do logging
+ *          }
+ *      }
+ * }
+ * </pre></blockquote>
+ * 
+ * Supports only GNU compatible AR data. ArEntry.getData() is not used.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArFile implements Closeable {
+
+    private final String name;
+    private final FileChannel channel;
+    private final List<ArEntry> entries;
+    private final Map<String, ArEntry> entriesByName;
+    long maxMappedRegionSize = Integer.MAX_VALUE;
+    private MappedRegions mappedRegions;
+    private ArSymbolTable symbolTable;
+
+    /**
+     * @param name - file name of AR archive
+     * @throws IOException if file cannot be opened or it is not AR archive or archive is corrupted
+     */
+    public ArFile(String name) throws IOException {
+        this(new File(name));
+    }
+
+    /**
+     * @param file - AR archive
+     * @throws IOException if file cannot be opened or it is not AR archive or archive is corrupted
+     */
+    public ArFile(File file) throws IOException {
+        this(file.toPath());
+    }
+
+    /**
+     * @param path - AR archive
+     * @throws IOException if file cannot be opened or it is not AR archive or archive is corrupted
+     */
+    public ArFile(Path path) throws IOException {
+        this.name = path.toString();
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.entries = Collections.unmodifiableList(readEntries(channel));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.entriesByName = new HashMap<String, ArEntry>();
+        for (ArEntry cur : entries) {
+            if (!entriesByName.containsKey(cur.getFilename())) {
+                entriesByName.put(cur.getFilename(), cur);
+            }
+        }
+    }
+
+    static List<ArEntry> readEntries(FileChannel channel) throws IOException {
+        ByteBuffer signature = ByteBuffer.allocate(ArHeaders.SIGNATURE_LENGTH);
+        readFully(channel, signature, 0);
+        ArHeaders.checkSignature(signature.array());
+
+        List<ArEntry> result = new ArrayList<ArEntry>();
+        LongFileNames longFileNames = null;
+        ByteBuffer header = ByteBuffer.allocate(ArHeaders.HEADER_LENGTH);
+        long fileSize = channel.size();
+        long position = ArHeaders.SIGNATURE_LENGTH;
+        while (position < fileSize) {
+            header.clear();
+            readFully(channel, header, position);
+            ArEntry cur = ArHeaders.parse(header.array(), longFileNames);
+            cur.setHeaderOffset(position);
+            cur.setDataOffset(position + ArHeaders.HEADER_LENGTH);
+            if (cur.getDataOffset() + cur.getSize() > fileSize) {
+                throw new IOException("unexpected end of file. Entry: " + cur.getFilename() + " size: " + cur.getSize());
+            }
+            position = ArHeaders.getNextHeaderOffset(cur.getDataOffset(), cur.getSize());
+
+            if (ArHeaders.isLongFileNames(cur)) {
+                if (cur.getSize() > Integer.MAX_VALUE) {
+                    throw new IOException("corrupted archive data. invalid long file names size: " + cur.getSize());
+                }
+                ByteBuffer names = ByteBuffer.allocate((int) cur.getSize());
+                readFully(channel, names, cur.getDataOffset());
+                longFileNames = new LongFileNames(names.array());
+                continue;
+            }
+            result.add(cur);
+        }
+        return result;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        long expected = dst.remaining();
+        while (dst.hasRemaining()) {
+            int readBytes = channel.read(dst, position);
+            if (readBytes == -1) {
+                throw new IOException("unexpected end of file. Expected: " + expected + ". Read: " + (expected - dst.remaining()));
+            }
+            position += readBytes;
+        }
+    }
+
+    /**
+     * @param name - entry filename
+     * @return first entry with the specified filename or null if not found
+     */
+    public ArEntry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * @return all entries in archive order. GNU long file names table is not included
+     */
+    public List<ArEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns GNU/SysV symbol table. Symbol table is read on the first call.
+     * @return symbol table or null if archive doesn't contain it
+     * @throws IOException if ArFile has been closed or symbol table is corrupted
+     */
+    public synchronized ArSymbolTable getSymbolTable() throws IOException {
+        if (symbolTable != null) {
+            return symbolTable;
+        }
+        for (ArEntry cur : entries) {
+            if (!ArSymbolTable.isSymbolTable(cur)) {
+                continue;
+            }
+            if (cur.getSize() > Integer.MAX_VALUE) {
+                throw new IOException("corrupted symbol table. invalid size: " + cur.getSize());
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) cur.getSize());
+            readFully(channel, data, cur.getDataOffset());
+            data.flip();
+            symbolTable = ArSymbolTable.parse(cur, data);
+            return symbolTable;
+        }
+        return null;
+    }
+
+    /**
+     * Finds entry which defines the symbol using GNU/SysV symbol table.
+     * @param symbol - symbol name
+     * @return entry or null if archive doesn't contain symbol table or symbol not found
+     * @throws IOException if ArFile has been closed or symbol table is corrupted
+     */
+    public ArEntry getEntryBySymbol(String symbol) throws IOException {
+        ArSymbolTable table = getSymbolTable();
+        if (table == null) {
+            return null;
+        }
+        long headerOffset = table.getHeaderOffset(symbol);
+        if (headerOffset < 0) {
+            return null;
+        }
+        int low = 0;
+        int high = entries.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long cur = entries.get(mid).getHeaderOffset();
+            if (cur < headerOffset) {
+                low = mid + 1;
+            } else if (cur > headerOffset) {
+                high = mid - 1;
+            } else {
+                return entries.get(mid);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens stream to read entry data. Stream does not share file pointer with other streams and could be used concurrently with them.
+     * @param entry - entry of this ArFile
+     * @return input stream which should be closed after use
+     * @throws IOException if ArFile has been closed
+     * @throws IllegalArgumentException if entry was not read from AR archive
+     */
+    public InputStream getInputStream(ArEntry entry) throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("ArFile closed");
+        }
+        if (entry == null || entry.getDataOffset() < 0) {
+            throw new IllegalArgumentException("entry was not read from archive");
+        }
+        return new ArEntryInputStream(channel, entry.getDataOffset(), entry.getSize());
+    }
+
+    /**
+     * Returns entry data as a read-only slice of memory mapped archive. Data is not copied into heap. 
+     * Archive is mapped on the first call. Archives bigger than 2Gb are mapped using several regions, 
+     * but single entry data must not be bigger than 2Gb.
+     * <p>NOTE: returned buffer stays valid after ArFile is closed until it is garbage collected.</p>
+     * @param entry - entry of this ArFile
+     * @return read-only buffer with entry data. Could be used concurrently with other buffers returned by this method
+     * @throws IOException if ArFile has been closed or entry data is bigger than 2Gb
+     * @throws IllegalArgumentException if entry was not read from AR archive
+     */
+    public ByteBuffer map(ArEntry entry) throws IOException {
+        if (entry == null || entry.getDataOffset() < 0) {
+            throw new IllegalArgumentException("entry was not read from archive");
+        }
+        if (entry.getSize() > maxMappedRegionSize) {
+            throw new IOException("entry is too big to be mapped: " + entry.getSize());
+        }
+        return getMappedRegions().slice(entry.getDataOffset(), entry.getSize());
+    }
+
+    synchronized MappedRegions getMappedRegions() throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("ArFile closed");
+        }
+        if (mappedRegions == null) {
+            mappedRegions = new MappedRegions(channel, entries, maxMappedRegionSize);
+        }
+        return mappedRegions;
+    }
+
+    /**
+     * Writes entry data to the channel. Data is transferred using FileChannel.transferTo, so it could be copied by operating system 
+     * without passing through JVM heap.
+     * @param entry - entry of this ArFile
+     * @param target - blocking channel. Not closed by this method
+     * @return number of bytes written
+     * @throws IOException if ArFile has been closed or unable to write to the channel
+     * @throws IllegalArgumentException if entry was not read from AR archive or channel is in non-blocking mode
+     */
+    public long extractTo(ArEntry entry, WritableByteChannel target) throws IOException {
+        if (entry == null || entry.getDataOffset() < 0) {
+            throw new IllegalArgumentException("entry was not read from archive");
+        }
+        transferTo(entry.getDataOffset(), entry.getSize(), target);
+        return entry.getSize();
+    }
+
+    /**
+     * Writes entry data to the file. Existing file is overwritten.
+     * @param entry - entry of this ArFile
+     * @param target - target file
+     * @throws IOException if ArFile has been closed or unable to write to the file
+     * @throws IllegalArgumentException if entry was not read from AR archive
+     * @see #extractTo(ArEntry, WritableByteChannel)
+     */
+    public void extractTo(ArEntry entry, Path target) throws IOException {
+        FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            extractTo(entry, targetChannel);
+        } finally {
+            targetChannel.close();
+        }
+    }
+
+    /**
+     * Extracts all entries into the directory. File names are taken from entry filenames. GNU symbol tables are not extracted.
+     * @param dir - target directory. Created if not exists
+     * @throws IOException if ArFile has been closed or unable to write to the directory or entry filename points outside of the directory
+     * @see #extractTo(ArEntry, Path)
+     */
+    public void extractAll(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (ArEntry cur : entries) {
+            if (ArSymbolTable.isSymbolTable(cur)) {
+                continue;
+            }
+            extractTo(cur, resolveTarget(dir, cur));
+        }
+    }
+
+    /**
+     * Extracts all entries into the directory concurrently. Every entry is written by a separate task using positional reads, 
+     * so extraction of archives with many small entries scales with the number of threads. If archive contains several entries 
+     * with the same filename, only the last one is extracted. GNU symbol tables are not extracted.
+     * @param dir - target directory. Created if not exists
+     * @param parallelism - maximum number of entries extracted concurrently
+     * @return extracted entries and per entry errors. Extraction doesn't stop on the first error
+     * @throws IOException if ArFile has been closed or unable to create the directory or extraction was interrupted
+     * @throws IllegalArgumentException if parallelism is less than 1
+     * @see #extractTo(ArEntry, Path)
+     */
+    public ArExtractionResult extractAll(final Path dir, int parallelism) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism should be positive. got: " + parallelism);
+        }
+        if (!channel.isOpen()) {
+            throw new IOException("ArFile closed");
+        }
+        Files.createDirectories(dir);
+        Map<String, ArEntry> lastEntries = new LinkedHashMap<String, ArEntry>();
+        for (ArEntry cur : entries) {
+            if (ArSymbolTable.isSymbolTable(cur)) {
+                continue;
+            }
+            lastEntries.remove(cur.getFilename());
+            lastEntries.put(cur.getFilename(), cur);
+        }
+        List<ArEntry> toExtract = new ArrayList<ArEntry>(lastEntries.values());
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(toExtract.size());
+        for (final ArEntry cur : toExtract) {
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    extractTo(cur, resolveTarget(dir, cur));
+                    return null;
+                }
+            });
+        }
+
+        List<ArEntry> extracted = new ArrayList<ArEntry>(toExtract.size());
+        Map<ArEntry, IOException> errors = new LinkedHashMap<ArEntry, IOException>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, tasks.size())));
+        try {
+            List<Future<Void>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                    extracted.add(toExtract.get(i));
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        errors.put(toExtract.get(i), (IOException) e.getCause());
+                    } else {
+                        errors.put(toExtract.get(i), new IOException(e.getCause()));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("extraction interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+        return new ArExtractionResult(extracted, errors);
+    }
+
+    static Path resolveTarget(Path dir, ArEntry entry) throws IOException {
+        Path normalizedDir = dir.toAbsolutePath().normalize();
+        Path result = normalizedDir.resolve(entry.getFilename()).normalize();
+        if (entry.getFilename().length() == 0 || result.equals(normalizedDir) || !result.startsWith(normalizedDir)) {
+            throw new IOException("invalid entry filename: " + entry.getFilename());
+        }
+        return result;
+    }
+
+    void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        // non-blocking channel might accept nothing and transfer would spin forever
+        if (target instanceof SelectableChannel && !((SelectableChannel) target).isBlocking()) {
+            throw new IllegalArgumentException("target channel should be in blocking mode");
+        }
+        long end = position + count;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                if (position >= channel.size()) {
+                    throw new IOException("unexpected end of file. Expected: " + count + ". Read: " + (count - (end - position)));
+                }
+                continue;
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * @return number of entries in archive
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return path to the AR archive
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Closes underlying file. All opened entry streams are closed as well.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
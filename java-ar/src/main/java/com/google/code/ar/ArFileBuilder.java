@@ -0,0 +1,280 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds AR archive from the entries with known sizes. Layout of the archive is calculated once before writing, so entries 
+ * are written concurrently into the preallocated file using positional writes. Normal scenario:
+ * 
+ * <blockquote><pre>
+ * ArFileBuilder builder = new ArFileBuilder();
+ * for (Path cur : objectFiles) {
+ *     ArEntry entry = new ArEntry();
+ *     entry.setFilename(cur.getFileName().toString());
+ *     entry.setFileMode(100644);
+ *     builder.add(entry, cur);
+ * }
+ * builder.build(Paths.get("libfoo.a"));
+ * </pre></blockquote>
+ * 
+ * GNU long file names table is created the same way as in ArOutputStream.setEntries.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArFileBuilder {
+
+    private static final byte[] PADDING = new byte[] { '\n' };
+
+    private final List<ArEntry> entries = new ArrayList<ArEntry>();
+    private final List<Path> sources = new ArrayList<Path>();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean deterministic = false;
+
+    /**
+     * Adds in-memory entry
+     * @param entry - entry with data
+     * @throws IllegalArgumentException if provided entry contains invalid data.
+     */
+    public void add(ArEntry entry) {
+        if (entry == null) {
+            throw new IllegalArgumentException("entry should be specified");
+        }
+        ArEntryValidator.validateInMemoryEntry(entry);
+        entries.add(entry);
+        sources.add(null);
+    }
+
+    /**
+     * Adds entry with data stored in the file. File size should not be changed until build is finished.
+     * @param entry - entry. ArEntry.data is not used
+     * @param source - file with entry data
+     * @throws IllegalArgumentException if provided entry contains invalid data.
+     */
+    public void add(ArEntry entry, Path source) {
+        if (entry == null || source == null) {
+            throw new IllegalArgumentException("entry and source should be specified");
+        }
+        ArEntryValidator.validate(entry);
+        entries.add(entry);
+        sources.add(source);
+    }
+
+    /**
+     * @param parallelism - maximum number of entries written concurrently. Number of available processors by default
+     * @throws IllegalArgumentException if parallelism is less than 1
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism should be positive. got: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * In deterministic mode archive depends only on the entries data, file names and timestamps set by caller. 
+     * See ArOutputStream.setDeterministic
+     * @param deterministic - true to enable deterministic mode. false by default
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * @return number of added entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes archive. Existing file is overwritten. Partially written archive is deleted on failure.
+     * @param target - archive file
+     * @throws IOException if unable to read entry data or write archive or build was interrupted
+     */
+    public void build(Path target) throws IOException {
+        final int count = entries.size();
+        final long[] sizes = new long[count];
+        for (int i = 0; i < count; i++) {
+            if (sources.get(i) == null) {
+                sizes[i] = entries.get(i).getData().length;
+            } else {
+                sizes[i] = Files.size(sources.get(i));
+            }
+        }
+
+        // layout
+        ArHeaderEncoder encoder = new ArHeaderEncoder();
+        encoder.setDeterministic(deterministic);
+        ByteArrayOutputStream start = new ByteArrayOutputStream();
+        start.write(ArOutputStream.HEADER, 0, ArOutputStream.HEADER.length);
+        String[] nameFields = null;
+        if (hasLongNames()) {
+            nameFields = new String[count];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            for (int i = 0; i < count; i++) {
+                nameFields[i] = "/" + baos.size();
+                byte[] name = (entries.get(i).getFilename() + "/\n").getBytes(ArHeaders.ASCII);
+                baos.write(name, 0, name.length);
+            }
+            start.write(encoder.encodeLongFileNames(baos.size()), 0, ArHeaders.HEADER_LENGTH);
+            baos.writeTo(start);
+            if (baos.size() % 2 != 0) {
+                start.write(PADDING, 0, PADDING.length);
+            }
+        }
+        final byte[] headers = new byte[count * ArHeaders.HEADER_LENGTH];
+        final long[] offsets = new long[count];
+        long position = start.size();
+        for (int i = 0; i < count; i++) {
+            String name = nameFields != null ? nameFields[i] : entries.get(i).getFilename();
+            System.arraycopy(encoder.encode(name, entries.get(i), sizes[i]), 0, headers, i * ArHeaders.HEADER_LENGTH, ArHeaders.HEADER_LENGTH);
+            offsets[i] = position;
+            position = ArHeaders.getNextHeaderOffset(position + ArHeaders.HEADER_LENGTH, sizes[i]);
+        }
+
+        boolean success = false;
+        final FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            write(channel, ByteBuffer.wrap(start.toByteArray()), 0);
+            if (position > start.size()) {
+                // preallocate. The last byte is either padding or overwritten by entry data
+                write(channel, ByteBuffer.wrap(PADDING), position - 1);
+            }
+            writeEntries(channel, headers, offsets, sizes);
+            success = true;
+        } finally {
+            channel.close();
+            if (!success) {
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    private void writeEntries(final FileChannel channel, final byte[] headers, final long[] offsets, final long[] sizes) throws IOException {
+        final int count = entries.size();
+        if (count == 0) {
+            return;
+        }
+        // workers pick next entry instead of task per entry. Archives might contain thousands of small entries
+        final AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(parallelism, count);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workers);
+        for (int i = 0; i < workers; i++) {
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    int cur;
+                    try {
+                        while ((cur = next.getAndIncrement()) < count) {
+                            writeEntry(channel, cur, ByteBuffer.wrap(headers, cur * ArHeaders.HEADER_LENGTH, ArHeaders.HEADER_LENGTH), offsets[cur], sizes[cur]);
+                        }
+                    } catch (Exception e) {
+                        // stop other workers
+                        next.set(count);
+                        throw e;
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>(workers);
+            for (Callable<Void> cur : tasks) {
+                results.add(executor.submit(cur));
+            }
+            for (Future<Void> cur : results) {
+                try {
+                    cur.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("build interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void writeEntry(FileChannel channel, int index, ByteBuffer header, long headerOffset, long size) throws IOException {
+        write(channel, header, headerOffset);
+        long dataOffset = headerOffset + ArHeaders.HEADER_LENGTH;
+        Path source = sources.get(index);
+        if (source == null) {
+            write(channel, ByteBuffer.wrap(entries.get(index).getData()), dataOffset);
+        } else {
+            FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+            try {
+                long position = dataOffset;
+                long end = dataOffset + size;
+                while (position < end) {
+                    long transferred = channel.transferFrom(sourceChannel, position, end - position);
+                    if (transferred <= 0) {
+                        throw new IOException("unexpected end of file: " + source + ". Expected: " + size + ". Read: " + (size - (end - position)));
+                    }
+                    position += transferred;
+                }
+            } finally {
+                sourceChannel.close();
+            }
+        }
+        if (size % 2 != 0) {
+            write(channel, ByteBuffer.wrap(PADDING), dataOffset + size);
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            position += channel.write(src, position);
+        }
+    }
+
+    private boolean hasLongNames() {
+        for (ArEntry cur : entries) {
+            if (cur.getFilename().getBytes(ArHeaders.ASCII).length > 16) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
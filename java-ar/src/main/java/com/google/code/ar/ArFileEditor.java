@@ -0,0 +1,543 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces and removes entries of the existing AR archive. Edits are collected and applied in one pass on commit(). 
+ * Only the part of the archive starting from the first affected entry is rewritten. Unchanged entries after it are 
+ * shifted in place. Normal scenario:
+ * 
+ * <blockquote><pre>
+ * ArFileEditor editor = new ArFileEditor(Paths.get("libfoo.a"));
+ * editor.replace(entry, Paths.get("foo.o"));
+ * editor.remove("bar.o");
+ * editor.commit();
+ * </pre></blockquote>
+ * 
+ * GNU long file names table is extended or rebuilt if new file names require it. This rewrites archive starting from the table. 
+ * If archive contains GNU/SysV symbol table, then it is updated with the new entry offsets and symbols of removed entries are dropped.
+ * Symbols of replaced entries are kept, so symbol table should be regenerated (i.e. using ranlib) if replacement defines different symbols.
+ * <p>NOTE: archive is modified in place. It might be corrupted if commit fails in the middle.</p>
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArFileEditor {
+
+    private static final byte[] PADDING = new byte[] { '\n' };
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final Map<String, Edit> edits = new LinkedHashMap<String, Edit>();
+    private boolean compact = false;
+
+    /**
+     * @param path - existing AR archive
+     */
+    public ArFileEditor(Path path) {
+        if (path == null) {
+            throw new IllegalArgumentException("path cannot be null");
+        }
+        this.path = path;
+    }
+
+    /**
+     * Replaces first entry with the same filename. Entry is appended if archive doesn't contain it.
+     * @param entry - entry with data
+     * @throws IllegalArgumentException if provided entry contains invalid data.
+     */
+    public void replace(ArEntry entry) {
+        if (entry == null) {
+            throw new IllegalArgumentException("entry should be specified");
+        }
+        ArEntryValidator.validateInMemoryEntry(entry);
+        edits.put(entry.getFilename(), new Edit(entry, entry.getData(), null));
+    }
+
+    /**
+     * Replaces first entry with the same filename. Entry is appended if archive doesn't contain it.
+     * @param entry - entry. ArEntry.data is not used
+     * @param data - file with entry data. Read on commit()
+     * @throws IllegalArgumentException if provided entry contains invalid data.
+     */
+    public void replace(ArEntry entry, Path data) {
+        if (entry == null || data == null) {
+            throw new IllegalArgumentException("entry and data should be specified");
+        }
+        ArEntryValidator.validate(entry);
+        edits.put(entry.getFilename(), new Edit(entry, null, data));
+    }
+
+    /**
+     * Removes first entry with the specified filename. Does nothing if archive doesn't contain it.
+     * @param filename - entry filename
+     */
+    public void remove(String filename) {
+        edits.put(filename, new Edit(null, null, null));
+    }
+
+    /**
+     * If true, then GNU long file names table is rebuilt on commit() and names of removed entries are dropped from it. 
+     * This rewrites archive starting from the table. false by default.
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Applies all collected edits in one pass.
+     * @throws IOException if archive is corrupted or unable to read replacement data or write archive
+     */
+    public void commit() throws IOException {
+        if (edits.isEmpty() && !compact) {
+            return;
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            apply(channel);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        edits.clear();
+    }
+
+    private void apply(FileChannel channel) throws IOException {
+        ByteBuffer signature = ByteBuffer.allocate(ArHeaders.SIGNATURE_LENGTH);
+        ArFile.readFully(channel, signature, 0);
+        ArHeaders.checkSignature(signature.array());
+
+        // scan existing archive
+        List<Member> originals = new ArrayList<Member>();
+        Member symbolTable = null;
+        Member longFileNamesTable = null;
+        LongFileNames longFileNames = null;
+        long fileSize = channel.size();
+        long position = ArHeaders.SIGNATURE_LENGTH;
+        while (position < fileSize) {
+            ByteBuffer header = ByteBuffer.allocate(ArHeaders.HEADER_LENGTH);
+            ArFile.readFully(channel, header, position);
+            ArEntry entry = ArHeaders.parse(header.array(), longFileNames);
+            entry.setHeaderOffset(position);
+            entry.setDataOffset(position + ArHeaders.HEADER_LENGTH);
+            if (entry.getDataOffset() + entry.getSize() > fileSize) {
+                throw new IOException("unexpected end of file. Entry: " + entry.getFilename() + " size: " + entry.getSize());
+            }
+            position = ArHeaders.getNextHeaderOffset(entry.getDataOffset(), entry.getSize());
+            Member cur = new Member(entry, header.array());
+            if (ArHeaders.isLongFileNames(entry)) {
+                longFileNamesTable = cur;
+                longFileNames = new LongFileNames(readData(channel, entry));
+            } else if (symbolTable == null && originals.isEmpty() && ArSymbolTable.isSymbolTable(entry)) {
+                symbolTable = cur;
+            } else {
+                originals.add(cur);
+            }
+        }
+
+        // build new layout of regular entries
+        Map<String, Edit> pending = new HashMap<String, Edit>(edits);
+        List<Member> layout = new ArrayList<Member>();
+        Map<Long, Member> replacedBy = new HashMap<Long, Member>();
+        for (Member cur : originals) {
+            Edit edit = pending.remove(cur.entry.getFilename());
+            if (edit == null) {
+                layout.add(cur);
+                continue;
+            }
+            if (edit.entry == null) {
+                continue;
+            }
+            Member replacement = new Member(edit);
+            replacement.nameField = new String(cur.header, 0, 16, ArHeaders.ASCII).trim();
+            replacement.originalOffset = cur.originalOffset;
+            replacedBy.put(Long.valueOf(cur.entry.getHeaderOffset()), replacement);
+            layout.add(replacement);
+        }
+        for (Edit edit : edits.values()) {
+            if (edit.entry != null && pending.containsKey(edit.entry.getFilename())) {
+                layout.add(new Member(edit));
+            }
+        }
+
+        // file names
+        boolean rebuildLongFileNames = compact && longFileNamesTable != null;
+        for (Member cur : layout) {
+            if (cur.edit != null && cur.nameField == null) {
+                cur.nameField = getNameField(cur.edit.entry.getFilename(), longFileNames);
+                if (cur.nameField == null) {
+                    rebuildLongFileNames = true;
+                }
+            }
+        }
+        Member newLongFileNamesTable = longFileNamesTable;
+        if (rebuildLongFileNames) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Map<String, String> offsets = new HashMap<String, String>();
+            for (Member cur : layout) {
+                String filename = cur.getFilename();
+                String nameField;
+                if (filename.length() > 15) {
+                    nameField = offsets.get(filename);
+                    if (nameField == null) {
+                        nameField = "/" + baos.size();
+                        offsets.put(filename, nameField);
+                        byte[] name = (filename + "/\n").getBytes(ArHeaders.ASCII);
+                        baos.write(name, 0, name.length);
+                    }
+                } else {
+                    nameField = filename + "/";
+                }
+                cur.setNameField(nameField);
+            }
+            newLongFileNamesTable = new Member(baos.toByteArray());
+            newLongFileNamesTable.header = new ArHeaderEncoder().encodeLongFileNames(baos.size()).clone();
+            if (longFileNamesTable != null && Arrays.equals(newLongFileNamesTable.content, readData(channel, longFileNamesTable.entry))) {
+                newLongFileNamesTable = longFileNamesTable;
+            }
+        }
+        if (newLongFileNamesTable != null) {
+            int index = 0;
+            if (longFileNamesTable != null) {
+                // keep table at its original position
+                index = layout.size();
+                for (int i = 0; i < layout.size(); i++) {
+                    long originalOffset = layout.get(i).originalOffset;
+                    // new entries might reference the table, so it should go before them
+                    if (originalOffset == -1 || originalOffset > longFileNamesTable.originalOffset) {
+                        index = i;
+                        break;
+                    }
+                }
+            }
+            layout.add(index, newLongFileNamesTable);
+        }
+
+        // symbol table size doesn't depend on offsets, so it could be calculated before layout
+        ArSymbolTable symbols = null;
+        List<String> newSymbols = new ArrayList<String>();
+        List<Member> newSymbolMembers = new ArrayList<Member>();
+        if (symbolTable != null) {
+            ByteBuffer data = ByteBuffer.wrap(readData(channel, symbolTable.entry));
+            symbols = ArSymbolTable.parse(symbolTable.entry, data);
+            Map<Long, Member> byOffset = new HashMap<Long, Member>();
+            for (Member cur : layout) {
+                if (cur.original) {
+                    byOffset.put(Long.valueOf(cur.entry.getHeaderOffset()), cur);
+                }
+            }
+            byOffset.putAll(replacedBy);
+            // symbols of removed entries are dropped
+            String[] orderedSymbols = symbols.getOrderedSymbols();
+            long[] orderedOffsets = symbols.getOrderedHeaderOffsets();
+            for (int i = 0; i < orderedSymbols.length; i++) {
+                Member cur = byOffset.get(Long.valueOf(orderedOffsets[i]));
+                if (cur != null) {
+                    newSymbols.add(orderedSymbols[i]);
+                    newSymbolMembers.add(cur);
+                }
+            }
+            // offsets are known only after layout, but they don't affect size
+            byte[] content = symbols.encode(newSymbols, Collections.nCopies(newSymbols.size(), Long.valueOf(0)));
+            if (content.length == symbolTable.entry.getSize()) {
+                layout.add(0, symbolTable);
+            } else {
+                layout.add(0, createSymbolTable(symbolTable, content));
+            }
+        }
+
+        long newPosition = ArHeaders.SIGNATURE_LENGTH;
+        for (Member cur : layout) {
+            cur.newHeaderOffset = newPosition;
+            newPosition = ArHeaders.getNextHeaderOffset(newPosition + ArHeaders.HEADER_LENGTH, cur.getSize());
+        }
+        if (symbolTable != null) {
+            List<Long> offsets = new ArrayList<Long>(newSymbolMembers.size());
+            for (Member cur : newSymbolMembers) {
+                offsets.add(Long.valueOf(cur.newHeaderOffset));
+            }
+            byte[] content = symbols.encode(newSymbols, offsets);
+            if (layout.get(0) != symbolTable || !Arrays.equals(content, readData(channel, symbolTable.entry))) {
+                Member newSymbolTable = createSymbolTable(symbolTable, content);
+                newSymbolTable.newHeaderOffset = ArHeaders.SIGNATURE_LENGTH;
+                layout.set(0, newSymbolTable);
+            }
+        }
+
+        // replacement files are checked before archive is modified
+        try {
+            for (Member cur : layout) {
+                if (cur.edit != null && cur.edit.source != null) {
+                    cur.edit.open();
+                }
+            }
+            write(channel, layout);
+            if (newPosition < channel.size()) {
+                channel.truncate(newPosition);
+            }
+        } finally {
+            for (Member cur : layout) {
+                if (cur.edit != null) {
+                    cur.edit.close();
+                }
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, List<Member> layout) throws IOException {
+        // relative order of existing entries is kept. Entries moved towards the beginning are shifted in ascending order and 
+        // entries moved towards the end in descending order, so data is never overwritten before it is shifted
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        for (Member cur : layout) {
+            if (cur.original && cur.newHeaderOffset < cur.entry.getHeaderOffset()) {
+                shift(channel, cur.entry.getDataOffset(), cur.newHeaderOffset + ArHeaders.HEADER_LENGTH, cur.getSize(), buffer);
+            }
+        }
+        for (int i = layout.size() - 1; i >= 0; i--) {
+            Member cur = layout.get(i);
+            if (cur.original && cur.newHeaderOffset > cur.entry.getHeaderOffset()) {
+                shift(channel, cur.entry.getDataOffset(), cur.newHeaderOffset + ArHeaders.HEADER_LENGTH, cur.getSize(), buffer);
+            }
+        }
+
+        for (Member cur : layout) {
+            if (cur.isUnchanged()) {
+                continue;
+            }
+            long dataOffset = cur.newHeaderOffset + ArHeaders.HEADER_LENGTH;
+            if (cur.original && cur.newHeaderOffset == cur.entry.getHeaderOffset()) {
+                // only header has been changed
+                write(channel, cur.header, cur.newHeaderOffset);
+                continue;
+            }
+            if (cur.edit != null) {
+                cur.header = new ArHeaderEncoder().encode(cur.nameField, cur.edit.entry, cur.getSize()).clone();
+            }
+            write(channel, cur.header, cur.newHeaderOffset);
+            if (cur.content != null) {
+                write(channel, cur.content, dataOffset);
+            } else if (cur.edit != null && cur.edit.data != null) {
+                write(channel, cur.edit.data, dataOffset);
+            } else if (cur.edit != null) {
+                transfer(cur.edit.channel, 0, cur.getSize(), channel, dataOffset);
+            }
+            // data of the existing entries has been shifted already
+            if (cur.getSize() % 2 != 0) {
+                write(channel, PADDING, dataOffset + cur.getSize());
+            }
+        }
+    }
+
+    private static void shift(FileChannel channel, long from, long to, long count, ByteBuffer buffer) throws IOException {
+        long position = 0;
+        while (position < count) {
+            int length = (int) Math.min(buffer.capacity(), count - position);
+            // copy from the end if regions overlap and data is moved towards the end
+            long chunk = to > from ? count - position - length : position;
+            buffer.clear();
+            buffer.limit(length);
+            ArFile.readFully(channel, buffer, from + chunk);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, to + chunk + buffer.position());
+            }
+            position += length;
+        }
+    }
+
+    private static Member createSymbolTable(Member symbolTable, byte[] content) throws IOException {
+        Member result = new Member(content);
+        result.header = symbolTable.header.clone();
+        ArHeaderEncoder.putDecimal(result.header, 48, 10, content.length);
+        return result;
+    }
+
+    private static String getNameField(String filename, LongFileNames longFileNames) {
+        if (longFileNames != null) {
+            int offset = longFileNames.getOffset(filename);
+            if (offset != -1) {
+                return "/" + offset;
+            }
+            if (filename.length() > 15) {
+                return null;
+            }
+            return filename + "/";
+        }
+        if (filename.length() > 16) {
+            return null;
+        }
+        return filename;
+    }
+
+    private static byte[] readData(FileChannel channel, ArEntry entry) throws IOException {
+        if (entry.getSize() > Integer.MAX_VALUE) {
+            throw new IOException("corrupted archive data. invalid entry size: " + entry.getSize());
+        }
+        ByteBuffer result = ByteBuffer.allocate((int) entry.getSize());
+        ArFile.readFully(channel, result, entry.getDataOffset());
+        return result.array();
+    }
+
+    private static void write(FileChannel channel, byte[] data, long position) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(data);
+        while (src.hasRemaining()) {
+            position += channel.write(src, position);
+        }
+    }
+
+    private static void transfer(FileChannel source, long sourcePosition, long count, FileChannel target, long targetPosition) throws IOException {
+        source.position(sourcePosition);
+        long end = targetPosition + count;
+        while (targetPosition < end) {
+            long transferred = target.transferFrom(source, targetPosition, end - targetPosition);
+            if (transferred <= 0) {
+                throw new IOException("unexpected end of file. Expected: " + count + ". Read: " + (count - (end - targetPosition)));
+            }
+            targetPosition += transferred;
+        }
+    }
+
+    private static class Edit {
+
+        private final ArEntry entry;
+        private final byte[] data;
+        private final Path source;
+        private long size = -1;
+        private FileChannel channel;
+
+        Edit(ArEntry entry, byte[] data, Path source) {
+            this.entry = entry;
+            this.data = data;
+            this.source = source;
+        }
+
+        long getSize() throws IOException {
+            if (size == -1) {
+                if (data != null) {
+                    size = data.length;
+                } else {
+                    size = Files.size(source);
+                }
+            }
+            return size;
+        }
+
+        void open() throws IOException {
+            channel = FileChannel.open(source, StandardOpenOption.READ);
+            if (channel.size() != getSize()) {
+                throw new IOException("file has been modified: " + source + ". Expected size: " + getSize() + ". Actual: " + channel.size());
+            }
+        }
+
+        void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private static class Member {
+
+        // existing entry
+        private final ArEntry entry;
+        private final boolean original;
+        private byte[] header;
+        private boolean isHeaderChanged = false;
+        // replaced or new entry
+        private final Edit edit;
+        private String nameField;
+        // generated entry
+        private final byte[] content;
+
+        private long originalOffset = -1;
+        private long newHeaderOffset;
+
+        Member(ArEntry entry, byte[] header) {
+            this.entry = entry;
+            this.original = true;
+            this.header = header;
+            this.originalOffset = entry.getHeaderOffset();
+            this.edit = null;
+            this.content = null;
+        }
+
+        Member(Edit edit) {
+            this.entry = null;
+            this.original = false;
+            this.edit = edit;
+            this.content = null;
+        }
+
+        Member(byte[] content) {
+            this.entry = null;
+            this.original = false;
+            this.edit = null;
+            this.content = content;
+        }
+
+        String getFilename() {
+            if (edit != null) {
+                return edit.entry.getFilename();
+            }
+            return entry.getFilename();
+        }
+
+        long getSize() throws IOException {
+            if (edit != null) {
+                return edit.getSize();
+            }
+            if (content != null) {
+                return content.length;
+            }
+            return entry.getSize();
+        }
+
+        void setNameField(String nameField) throws IOException {
+            if (edit != null) {
+                this.nameField = nameField;
+                return;
+            }
+            byte[] newHeader = header.clone();
+            ArHeaderEncoder.putString(newHeader, 0, 16, nameField);
+            if (!Arrays.equals(newHeader, header)) {
+                header = newHeader;
+                isHeaderChanged = true;
+            }
+        }
+
+        boolean isUnchanged() {
+            return original && !isHeaderChanged && newHeaderOffset == entry.getHeaderOffset();
+        }
+    }
+
+}
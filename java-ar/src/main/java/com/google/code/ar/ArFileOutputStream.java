@@ -18,12 +18,19 @@ package com.google.code.ar;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * AR format was not designed for streaming data, so it is big overhead keeping file bytes in memory. 
- * In comparison to <code>com.google.code.ar.ArOutputStream</code> this implementation uses java.io.RandomAccessFile to write data. ArEntry.data is not used.
+ * In comparison to <code>com.google.code.ar.ArOutputStream</code> this implementation uses java.nio.channels.FileChannel to write data. ArEntry.data is not used.
+ * Data is buffered and file size of every entry is filled using positional write on closeEntry(). 
+ * By default data is forced to the storage device on close. See <code>com.google.code.ar.SyncMode</code> for other options.
  * <p>NOTE: that the long file names which are longer than 16 bytes will be truncated to the first 16.</p>
+ * <p>Entries could be appended to the existing archive without rewriting it. If existing archive contains GNU long file names table, 
+ * then long file names from this table are preserved. Names which cannot be represented in the existing archive are rejected.</p>
  * Normal scenario: 
  * 
  * <blockquote><pre>
@@ -54,21 +61,166 @@ import java.io.RandomAccessFile;
  */
 public class ArFileOutputStream extends OutputStream {
 
-	private final RandomAccessFile raf;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final byte[] PADDING = new byte[] { '\n' };
+
+	private final FileChannel channel;
+	private final SyncMode syncMode;
+	private final boolean append;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final byte[] sizeField = new byte[10];
+	private ArHeaderEncoder encoder;
 	private boolean isClosed = false;
 	private boolean isHeaderPresent = false;
 	private ArEntry curEntry = null;
 	private long curFileLenghtPointer;
 	private long curWroteBytes = 0;
+	private long flushedPosition = 0;
+	private LongFileNames longFileNames = null;
+	private ArDigests digests = null;
+	private ArListener listener = null;
+	private long ioNanos = 0;
+	private boolean deterministic = false;
 
+	/**
+	 * Creates new archive or overwrites existing file. Data is forced to the storage device on close.
+	 * @param fileName - file name
+	 * @throws IOException if unable to open file
+	 */
 	public ArFileOutputStream(String fileName) throws IOException {
-		this.raf = new RandomAccessFile(fileName, "rw");
+		this(fileName, SyncMode.ON_CLOSE);
+	}
+
+	/**
+	 * Creates new archive or overwrites existing file.
+	 * @param fileName - file name
+	 * @param syncMode - defines when data is forced to the storage device
+	 * @throws IOException if unable to open file
+	 */
+	public ArFileOutputStream(String fileName, SyncMode syncMode) throws IOException {
+		this(fileName, syncMode, false);
+	}
+
+	/**
+	 * @param fileName - file name
+	 * @param syncMode - defines when data is forced to the storage device
+	 * @param append - if true, then entries are appended to the existing archive. Otherwise existing file is overwritten
+	 * @throws IOException if unable to open file or existing file is not AR archive or it is corrupted
+	 */
+	public ArFileOutputStream(String fileName, SyncMode syncMode, boolean append) throws IOException {
+		if (syncMode == null) {
+			throw new IllegalArgumentException("sync mode cannot be null");
+		}
+		this.syncMode = syncMode;
+		this.append = append;
+		if (!append) {
+			this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			return;
+		}
+		this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() != 0) {
+				seekToEnd();
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Validates existing archive and jumps over entries using their headers only.
+	 */
+	private void seekToEnd() throws IOException {
+		ByteBuffer signature = ByteBuffer.allocate(ArHeaders.SIGNATURE_LENGTH);
+		ArFile.readFully(channel, signature, 0);
+		ArHeaders.checkSignature(signature.array());
+
+		ByteBuffer header = ByteBuffer.allocate(ArHeaders.HEADER_LENGTH);
+		long fileSize = channel.size();
+		long position = ArHeaders.SIGNATURE_LENGTH;
+		boolean isPaddingMissing = false;
+		while (position < fileSize) {
+			header.clear();
+			ArFile.readFully(channel, header, position);
+			ArEntry cur = ArHeaders.parse(header.array(), null);
+			long dataOffset = position + ArHeaders.HEADER_LENGTH;
+			position = ArHeaders.getNextHeaderOffset(dataOffset, cur.getSize());
+			if (dataOffset + cur.getSize() > fileSize) {
+				throw new IOException("unexpected end of file. Entry: " + cur.getFilename() + " size: " + cur.getSize());
+			}
+			// last entry might be written without padding
+			isPaddingMissing = position > fileSize;
+			if (ArHeaders.isLongFileNames(cur)) {
+				if (cur.getSize() > Integer.MAX_VALUE) {
+					throw new IOException("corrupted archive data. invalid long file names size: " + cur.getSize());
+				}
+				ByteBuffer names = ByteBuffer.allocate((int) cur.getSize());
+				ArFile.readFully(channel, names, dataOffset);
+				longFileNames = new LongFileNames(names.array());
+			}
+		}
+		encoder = new ArHeaderEncoder();
+		encoder.setDeterministic(deterministic);
+		isHeaderPresent = true;
+		if (isPaddingMissing) {
+			position = fileSize;
+		}
+		channel.position(position);
+		flushedPosition = position;
+		if (isPaddingMissing) {
+			writeInternal(PADDING, 0, PADDING.length);
+		}
+	}
+
+	/**
+	 * Digests of the entry data are computed while data is written and available using ArEntry.getDigest() after 
+	 * closeEntry(). Applies to the entries started after this call.
+	 * @param algorithms - "CRC32", "CRC32C" or any MessageDigest algorithm. i.e. "SHA-256". null to disable digests
+	 * @throws IllegalArgumentException if algorithm is not supported
+	 * @throws IllegalStateException if current entry is not closed
+	 */
+	public void setDigestAlgorithms(String... algorithms) {
+		if (curEntry != null) {
+			throw new IllegalStateException("entry is not closed");
+		}
+		if (algorithms == null) {
+			digests = null;
+		} else {
+			digests = new ArDigests(algorithms);
+		}
+	}
+
+	/**
+	 * In deterministic mode output depends only on the entries data, file names and timestamps set by caller. Entries without 
+	 * timestamp get 0 instead of the current time. Owner id and group id are 0 and file mode is 644. Similar to "ar D".
+	 * Applies to the entries started after this call.
+	 * @param deterministic - true to enable deterministic mode. false by default
+	 */
+	public void setDeterministic(boolean deterministic) {
+		this.deterministic = deterministic;
+		if (encoder != null) {
+			encoder.setDeterministic(deterministic);
+		}
+	}
+
+	/**
+	 * Sets listener which receives callbacks for all entries started after this call and syncs.
+	 * @param listener - listener. null to disable instrumentation
+	 * @throws IllegalStateException if current entry is not closed
+	 */
+	public void setListener(ArListener listener) {
+		if (curEntry != null) {
+			throw new IllegalStateException("entry is not closed");
+		}
+		this.listener = listener;
+		ioNanos = 0;
 	}
 
 	/**
 	 * Closes previous entry if it wasnt closed and starts new entry. File size will be filled later on closeEntry()
 	 * @param entry - entry
-	 * @throws IOException if stream has been closed or unable to write to file.
+	 * @throws IOException if stream has been closed, unable to write to file or file name is too long for the appended archive.
      * @throws IllegalArgumentException if provided entry contains invalid data.
 	 */
 	public void putNextEntry(ArEntry entry) throws IOException {
@@ -81,8 +233,14 @@ public class ArFileOutputStream extends OutputStream {
 		}
 
 		ArEntryValidator.validate(entry);
+		String name = null;
+		if (entry != null) {
+			name = encodeName(entry.getFilename());
+		}
 		if (!isHeaderPresent) {
-			raf.write(ArOutputStream.HEADER);
+			encoder = new ArHeaderEncoder();
+			encoder.setDeterministic(deterministic);
+			writeInternal(ArOutputStream.HEADER, 0, ArOutputStream.HEADER.length);
 			isHeaderPresent = true;
 		}
 		if (entry == null) {
@@ -90,35 +248,37 @@ public class ArFileOutputStream extends OutputStream {
 		}
 
 		curEntry = entry;
+		if (digests != null) {
+			digests.reset();
+		}
 
-		String time = ArOutputStream.getCurTime();
-
-		if( curEntry.getFilename().length() > 16 ) {
-			write(curEntry.getFilename().substring(0, 15), 16);
-		} else {
-			write(curEntry.getFilename(), 16);
+		curFileLenghtPointer = getPosition() + 48;
+		writeInternal(encoder.encode(name, curEntry, 0), 0, ArHeaders.HEADER_LENGTH);
+		if (listener != null) {
+			listener.entryStarted(curEntry, true);
 		}
-		
-		write(time, 12);
-		write(String.valueOf(curEntry.getOwnerId()), 6);
-		write(String.valueOf(curEntry.getGroupId()), 6);
-		write(String.valueOf(curEntry.getFileMode()), 8);
-		curFileLenghtPointer = raf.getFilePointer();
-		write("0", 10);
-		raf.write(ArOutputStream.MAGIC);
 	}
-	
-    private void write(String str, int maxLenght) throws IOException {
-        byte[] data = str.getBytes(ArOutputStream.ASCII);
-        if (data.length > maxLenght) {
-            throw new IOException("invalid string data");
-        }
-        raf.write(data);
-        for (int i = data.length; i < maxLenght; i++) {
-            raf.write((byte) 32);
-        }
-    }
 
+	private String encodeName(String filename) throws IOException {
+		if (longFileNames == null) {
+			if (filename.length() <= 16) {
+				return filename;
+			}
+			if (append) {
+				throw new IOException("file name is longer than 16 bytes: " + filename);
+			}
+			return filename.substring(0, 15);
+		}
+		// long names table is read only when appending. Names should be terminated by "/" if it is present
+		int offset = longFileNames.getOffset(filename);
+		if (offset != -1) {
+			return "/" + offset;
+		}
+		if (filename.length() > 15) {
+			throw new IOException("file name is longer than 15 bytes and it is missing in the long file names table: " + filename);
+		}
+		return filename + "/";
+	}
 
     /**
      * close current entry and fill file size
@@ -130,48 +290,155 @@ public class ArFileOutputStream extends OutputStream {
 		}
 		
 		if (curWroteBytes % 2 != 0) {
-			raf.write('\n');
+			writeInternal(PADDING, 0, PADDING.length);
 		}
 
-		long curEntryDataEnd = raf.getFilePointer();
-		raf.seek(curFileLenghtPointer);
-		write(String.valueOf(curWroteBytes), 10);
-		raf.seek(curEntryDataEnd);
+		ArHeaderEncoder.putDecimal(sizeField, 0, sizeField.length, curWroteBytes);
+		if (curFileLenghtPointer >= flushedPosition) {
+			// header is still in the buffer
+			int index = (int) (curFileLenghtPointer - flushedPosition);
+			for (int i = 0; i < sizeField.length; i++) {
+				buffer.put(index + i, sizeField[i]);
+			}
+		} else {
+			long start = listener != null ? System.nanoTime() : 0;
+			ByteBuffer src = ByteBuffer.wrap(sizeField);
+			long position = curFileLenghtPointer;
+			while (src.hasRemaining()) {
+				position += channel.write(src, position);
+			}
+			if (listener != null) {
+				ioNanos += System.nanoTime() - start;
+			}
+		}
+
+		if (syncMode == SyncMode.PER_ENTRY) {
+			flushBuffer();
+		}
+		if (listener != null) {
+			listener.entryFinished(curEntry, curWroteBytes, 0, ioNanos);
+			ioNanos = 0;
+		}
+		if (syncMode == SyncMode.PER_ENTRY) {
+			force(false);
+		}
 		
+		if (digests != null) {
+			curEntry.setDigests(digests.finish());
+		}
 		curWroteBytes = 0;
 		curEntry = null;
 	}
 	
 	@Override
 	public void write(int b) throws IOException {
-		raf.write(b);
+		checkCurEntry();
+		if (!buffer.hasRemaining()) {
+			flushBuffer();
+		}
+		buffer.put((byte) b);
 		curWroteBytes++;
+		if (digests != null) {
+			digests.update(b);
+		}
 	}
 	
 	@Override
 	public void write(byte[] b) throws IOException {
-		raf.write(b);
-		curWroteBytes += b.length;
+		write(b, 0, b.length);
 	}
 	
 	@Override
 	public void write(byte[] b, int off, int len) throws IOException {
-		raf.write(b, off, len);
+		checkCurEntry();
+		writeInternal(b, off, len);
 		curWroteBytes += len;
+		if (digests != null) {
+			digests.update(b, off, len);
+		}
+	}
+
+	private void checkCurEntry() throws IOException {
+		if (isClosed) {
+			throw new IOException("stream closed");
+		}
+		if (curEntry == null) {
+			throw new IOException("entry is not started");
+		}
+	}
+
+	private void writeInternal(byte[] b, int off, int len) throws IOException {
+		if (len > buffer.remaining()) {
+			flushBuffer();
+		}
+		if (len > buffer.remaining()) {
+			long start = listener != null ? System.nanoTime() : 0;
+			ByteBuffer src = ByteBuffer.wrap(b, off, len);
+			while (src.hasRemaining()) {
+				flushedPosition += channel.write(src);
+			}
+			if (listener != null) {
+				ioNanos += System.nanoTime() - start;
+			}
+			return;
+		}
+		buffer.put(b, off, len);
+	}
+
+	private void flushBuffer() throws IOException {
+		long start = listener != null ? System.nanoTime() : 0;
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			flushedPosition += channel.write(buffer);
+		}
+		buffer.clear();
+		if (listener != null) {
+			ioNanos += System.nanoTime() - start;
+		}
+	}
+
+	private long getPosition() {
+		return flushedPosition + buffer.position();
 	}
 	
 	@Override
 	public void close() throws IOException {
-		if (curEntry != null) {
-			closeEntry();
+		if (isClosed) {
+			return;
+		}
+		try {
+			if (curEntry != null) {
+				closeEntry();
+			}
+			flushBuffer();
+			if (syncMode != SyncMode.NONE) {
+				force(true);
+			}
+		} finally {
+			channel.close();
+			isClosed = true;
 		}
-		raf.getFD().sync();
-		raf.close();
-		isClosed = true;
 	}
 
+	/**
+	 * Writes buffered data to the file. Data is forced to the storage device unless SyncMode.NONE is used.
+	 */
 	@Override
 	public void flush() throws IOException {
-		raf.getChannel().force(false);
+		flushBuffer();
+		if (syncMode != SyncMode.NONE) {
+			force(false);
+		}
+	}
+
+	private void force(boolean metaData) throws IOException {
+		if (listener == null) {
+			channel.force(metaData);
+			return;
+		}
+		listener.syncStarted();
+		long start = System.nanoTime();
+		channel.force(metaData);
+		listener.syncFinished(System.nanoTime() - start);
 	}
 }
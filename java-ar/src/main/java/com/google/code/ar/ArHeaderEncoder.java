@@ -0,0 +1,138 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Encodes 60 bytes entry headers into the reusable buffer. Modification time is re-encoded only if it differs from the previous entry.
+ * In deterministic mode header depends only on the file name, size and timestamp provided by caller: owner id and group id 
+ * are 0 and file mode is 644.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class ArHeaderEncoder {
+
+    private final byte[] header = new byte[ArHeaders.HEADER_LENGTH];
+    private static final byte[] DETERMINISTIC_IDS = "0     0     644     ".getBytes(ArHeaders.ASCII);
+
+    private final byte[] time = new byte[12];
+    private final long defaultTimestamp;
+    private long timestamp = -1;
+    private boolean deterministic = false;
+
+    /**
+     * Creates encoder which stamps entries without timestamp with the current time
+     */
+    ArHeaderEncoder() throws IOException {
+        this(System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @param defaultTimestamp - modification time in seconds of the entries without timestamp
+     */
+    ArHeaderEncoder(long defaultTimestamp) throws IOException {
+        this.defaultTimestamp = defaultTimestamp;
+        header[58] = ArOutputStream.MAGIC[0];
+        header[59] = ArOutputStream.MAGIC[1];
+    }
+
+    /**
+     * @param name - file name as it should be stored in the header. i.e. "/offset" for long file names
+     * @return header. Valid until the next encode call
+     * @throws IOException if name or any numeric field doesn't fit into the header
+     */
+    byte[] encode(String name, ArEntry entry, long size) throws IOException {
+        putString(header, 0, 16, name);
+        long curTimestamp = entry.getFileModificationTimestamp() / 1000;
+        if (curTimestamp <= 0) {
+            curTimestamp = deterministic ? 0 : defaultTimestamp;
+        }
+        if (curTimestamp != timestamp) {
+            putDecimal(time, 0, time.length, curTimestamp);
+            timestamp = curTimestamp;
+        }
+        System.arraycopy(time, 0, header, 16, time.length);
+        if (deterministic) {
+            System.arraycopy(DETERMINISTIC_IDS, 0, header, 28, DETERMINISTIC_IDS.length);
+        } else {
+            putDecimal(header, 28, 6, entry.getOwnerId());
+            putDecimal(header, 34, 6, entry.getGroupId());
+            putDecimal(header, 40, 8, entry.getFileMode());
+        }
+        putDecimal(header, 48, 10, size);
+        return header;
+    }
+
+    /**
+     * @param deterministic - if true, then entries without timestamp get 0 and owner id, group id and file mode are normalized
+     */
+    void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * @return header of GNU long file names table. Valid until the next encode call
+     */
+    byte[] encodeLongFileNames(long size) throws IOException {
+        putString(header, 0, 16, ArHeaders.LONG_FILE_NAMES);
+        fill(header, 16, 42);
+        putDecimal(header, 48, 10, size);
+        return header;
+    }
+
+    static void putString(byte[] dst, int offset, int length, String str) throws IOException {
+        if (str.length() > length) {
+            throw new IOException("invalid string data");
+        }
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c > 127) {
+                c = '?';
+            }
+            dst[offset + i] = (byte) c;
+        }
+        fill(dst, offset + str.length(), length - str.length());
+    }
+
+    static void putDecimal(byte[] dst, int offset, int length, long value) throws IOException {
+        if (value < 0) {
+            throw new IOException("invalid numeric data: " + value);
+        }
+        int digits = 1;
+        for (long cur = value / 10; cur > 0; cur /= 10) {
+            digits++;
+        }
+        if (digits > length) {
+            throw new IOException("invalid string data");
+        }
+        long cur = value;
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[offset + i] = (byte) ('0' + (cur % 10));
+            cur /= 10;
+        }
+        fill(dst, offset + digits, length - digits);
+    }
+
+    private static void fill(byte[] dst, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            dst[i] = ' ';
+        }
+    }
+
+}
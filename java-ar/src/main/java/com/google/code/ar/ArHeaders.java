@@ -0,0 +1,222 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Parsing of AR archive signature and 60 bytes entry headers. Shared by all AR readers.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class ArHeaders {
+
+    static final Charset ASCII = Charset.forName("ASCII");
+    static final int SIGNATURE_LENGTH = 8;
+    static final int HEADER_LENGTH = 60;
+    static final String LONG_FILE_NAMES = "//";
+
+    static void checkSignature(byte[] signature) throws IOException {
+        String headerStr = new String(signature, ASCII);
+        if (headerStr.trim().length() == 0 || !headerStr.equals("!<arch>\n")) {
+            throw new IOException("not an \"AR\" archive");
+        }
+    }
+
+    /**
+     * Parse entry header. Numeric fields are parsed directly from the header bytes.
+     * @param header - 60 bytes header
+     * @param longFileNames - long file names table or null if archive doesn't contain it
+     */
+    static ArEntry parse(byte[] header, LongFileNames longFileNames) throws IOException {
+        ArEntry result = new ArEntry();
+        result.setSize(parseSize(header));
+        result.setFileModificationTimestamp(parseTimestamp(header) * 1000);
+        result.setOwnerId(parseOwnerId(header));
+        result.setGroupId(parseGroupId(header));
+        result.setFileMode(parseFileMode(header));
+        Filename filename = new Filename();
+        parseFilename(header, longFileNames, filename);
+        result.setFilename(filename.decode());
+        return result;
+    }
+
+    /**
+     * Checks header magic and parses file data size
+     */
+    static long parseSize(byte[] header) throws IOException {
+        if (header[58] != 0x60 || header[59] != 0x0A) {
+            throw new IOException("corrupted archive data");
+        }
+        long result = parseDecimal(header, 48, 10, "file data lenght");
+        if (result == -1) {
+            throw new IOException("corrupted archive data. invalid file data lenght");
+        }
+        return result;
+    }
+
+    /**
+     * @return timestamp in seconds
+     */
+    static long parseTimestamp(byte[] header) throws IOException {
+        return parseOptionalDecimal(header, 16, 12, "timestamp");
+    }
+
+    static int parseOwnerId(byte[] header) throws IOException {
+        return (int) parseOptionalDecimal(header, 28, 6, "owner id");
+    }
+
+    static int parseGroupId(byte[] header) throws IOException {
+        return (int) parseOptionalDecimal(header, 34, 6, "group id");
+    }
+
+    static int parseFileMode(byte[] header) throws IOException {
+        return (int) parseOptionalDecimal(header, 40, 8, "file mode");
+    }
+
+    /**
+     * Parse file name without decoding it. Symbol table "/" and long file names table "//" names are returned as is.
+     * @param header - 60 bytes header
+     * @param longFileNames - long file names table or null if archive doesn't contain it
+     * @param result - parsed file name. Points either to the header or to the long file names table
+     */
+    static void parseFilename(byte[] header, LongFileNames longFileNames, Filename result) throws IOException {
+        int start = 0;
+        int end = 16;
+        while (start < end && header[start] == ' ') {
+            start++;
+        }
+        while (end > start && header[end - 1] == ' ') {
+            end--;
+        }
+        result.set(header, start, end);
+        if (longFileNames == null || start == end) {
+            return;
+        }
+        if (header[start] == '/') {
+            if (end - start == 1 || !isDigit(header[start + 1])) {
+                return;
+            }
+            long offset = parseDecimal(header, start + 1, end - start - 1, "long file name offset");
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("corrupted archive data. invalid long file name offset: " + offset);
+            }
+            longFileNames.resolve((int) offset, result);
+            return;
+        }
+        if (header[end - 1] != '/') {
+            throw new IOException("corrupted archive data. invalid short file name: " + new String(header, start, end - start, ASCII));
+        }
+        result.set(header, start, end - 1);
+    }
+
+    private static long parseOptionalDecimal(byte[] data, int offset, int length, String field) throws IOException {
+        long result = parseDecimal(data, offset, length, field);
+        if (result == -1) {
+            return 0;
+        }
+        return result;
+    }
+
+    /**
+     * Parse space padded decimal number
+     * @return -1 if field contains only spaces
+     * @throws IOException if field contains invalid characters
+     */
+    static long parseDecimal(byte[] data, int offset, int length, String field) throws IOException {
+        int end = offset + length;
+        int i = offset;
+        while (i < end && data[i] == ' ') {
+            i++;
+        }
+        if (i == end) {
+            return -1;
+        }
+        long result = 0;
+        for (; i < end && isDigit(data[i]); i++) {
+            result = result * 10 + (data[i] - '0');
+        }
+        for (; i < end; i++) {
+            if (data[i] != ' ') {
+                throw new IOException("corrupted archive data. invalid " + field + ": " + new String(data, offset, length, ASCII));
+            }
+        }
+        return result;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * @return true if entry is GNU long file names table
+     */
+    static boolean isLongFileNames(ArEntry entry) {
+        return entry.getFilename().equals(LONG_FILE_NAMES) && entry.getFileModificationTimestamp() == 0;
+    }
+
+    /**
+     * @return offset of the next entry header. Entry data is aligned to 2 bytes
+     */
+    static long getNextHeaderOffset(long dataOffset, long size) {
+        return dataOffset + size + (size % 2);
+    }
+
+    /**
+     * File name bytes. Reused to avoid allocation per entry
+     */
+    static class Filename {
+
+        private byte[] data;
+        private int offset;
+        private int length;
+
+        void set(byte[] data, int start, int end) {
+            this.data = data;
+            this.offset = start;
+            this.length = end - start;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        int copy(byte[] dst, int dstOffset) {
+            System.arraycopy(data, offset, dst, dstOffset, length);
+            return length;
+        }
+
+        boolean equals(String filename) {
+            if (filename.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (filename.charAt(i) != (char) (data[offset + i] & 0xFF)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String decode() {
+            return new String(data, offset, length, ASCII);
+        }
+    }
+
+}
@@ -0,0 +1,375 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe cache of parsed archive indexes. Index is reloaded if archive modification time or size has been changed.
+ * Least recently used indexes are evicted when memory budget is exceeded. Small entries could be cached off-heap as well:
+ * 
+ * <blockquote><pre>
+ * ArIndexCache cache = new ArIndexCache(64 * 1024 * 1024, 256 * 1024 * 1024, 64 * 1024);
+ * ByteBuffer control = cache.getData(Paths.get("nginx.deb"), "control.tar.gz");
+ * </pre></blockquote>
+ * 
+ * Returned entries are copies and could be modified by the caller.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArIndexCache {
+
+    // approximate size of ArEntry, its filename and references to it
+    private static final int ENTRY_OVERHEAD = 200;
+    private static final int INDEX_OVERHEAD = 300;
+
+    private final long maxIndexBytes;
+    private final long maxDataBytes;
+    private final long maxCachedEntrySize;
+    private final LinkedHashMap<Path, Index> indexes = new LinkedHashMap<Path, Index>(16, 0.75f, true);
+    private final LinkedHashMap<DataKey, ByteBuffer> data = new LinkedHashMap<DataKey, ByteBuffer>(16, 0.75f, true);
+    private long indexBytes = 0;
+    private long dataBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder dataHits = new LongAdder();
+    private final LongAdder dataMisses = new LongAdder();
+    private final LongAdder dataEvictions = new LongAdder();
+
+    /**
+     * Creates cache of indexes only
+     * @param maxIndexBytes - approximate memory budget of indexes
+     * @throws IllegalArgumentException if budget is negative
+     */
+    public ArIndexCache(long maxIndexBytes) {
+        this(maxIndexBytes, 0, 0);
+    }
+
+    /**
+     * @param maxIndexBytes - approximate memory budget of indexes
+     * @param maxDataBytes - off-heap memory budget of cached entries data. 0 to disable data caching
+     * @param maxCachedEntrySize - maximum size of the entry which data could be cached
+     * @throws IllegalArgumentException if any argument is negative
+     */
+    public ArIndexCache(long maxIndexBytes, long maxDataBytes, long maxCachedEntrySize) {
+        if (maxIndexBytes < 0 || maxDataBytes < 0 || maxCachedEntrySize < 0) {
+            throw new IllegalArgumentException("cache limits should be positive");
+        }
+        this.maxIndexBytes = maxIndexBytes;
+        this.maxDataBytes = maxDataBytes;
+        this.maxCachedEntrySize = Math.min(maxCachedEntrySize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param archive - AR archive
+     * @return all entries of the archive including symbol table. GNU long file names table is not returned
+     * @throws IOException if unable to read archive or archive is corrupted
+     */
+    public List<ArEntry> getEntries(Path archive) throws IOException {
+        List<ArEntry> entries = getIndex(archive).entries;
+        List<ArEntry> result = new ArrayList<ArEntry>(entries.size());
+        for (ArEntry cur : entries) {
+            result.add(copy(cur));
+        }
+        return result;
+    }
+
+    /**
+     * @param archive - AR archive
+     * @param filename - entry filename
+     * @return first entry with the same filename or null if archive doesn't contain it
+     * @throws IOException if unable to read archive or archive is corrupted
+     */
+    public ArEntry getEntry(Path archive, String filename) throws IOException {
+        ArEntry result = getIndex(archive).byName.get(filename);
+        if (result == null) {
+            return null;
+        }
+        return copy(result);
+    }
+
+    /**
+     * Reads entry data. Data of the entries smaller than maxCachedEntrySize is cached off-heap.
+     * @param archive - AR archive
+     * @param filename - entry filename
+     * @return read-only entry data or null if archive doesn't contain entry
+     * @throws IOException if unable to read archive or archive is corrupted
+     */
+    public ByteBuffer getData(Path archive, String filename) throws IOException {
+        Index index = getIndex(archive);
+        ArEntry entry = index.byName.get(filename);
+        if (entry == null) {
+            return null;
+        }
+        boolean cacheable = maxDataBytes > 0 && entry.getSize() <= maxCachedEntrySize && entry.getSize() <= maxDataBytes;
+        if (!cacheable) {
+            return read(index.path, entry, false).asReadOnlyBuffer();
+        }
+        // key includes archive version, so data of the modified archive is never returned
+        DataKey key = new DataKey(index.path, index.lastModified, index.size, entry.getHeaderOffset());
+        synchronized (this) {
+            ByteBuffer cached = data.get(key);
+            if (cached != null) {
+                dataHits.increment();
+                return cached.asReadOnlyBuffer();
+            }
+        }
+        dataMisses.increment();
+        ByteBuffer result = read(index.path, entry, true);
+        synchronized (this) {
+            ByteBuffer previous = data.put(key, result);
+            if (previous != null) {
+                dataBytes -= previous.capacity();
+            }
+            dataBytes += result.capacity();
+            Iterator<ByteBuffer> it = data.values().iterator();
+            while (dataBytes > maxDataBytes && it.hasNext()) {
+                dataBytes -= it.next().capacity();
+                it.remove();
+                dataEvictions.increment();
+            }
+        }
+        return result.asReadOnlyBuffer();
+    }
+
+    /**
+     * Removes index and cached data of the archive
+     * @param archive - AR archive
+     */
+    public synchronized void invalidate(Path archive) {
+        Path path = archive.toAbsolutePath().normalize();
+        Index index = indexes.remove(path);
+        if (index != null) {
+            indexBytes -= index.weight;
+        }
+        removeData(path);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of indexes evicted due to memory budget
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getDataHits() {
+        return dataHits.sum();
+    }
+
+    public long getDataMisses() {
+        return dataMisses.sum();
+    }
+
+    public long getDataEvictions() {
+        return dataEvictions.sum();
+    }
+
+    /**
+     * @return approximate memory used by cached indexes
+     */
+    public synchronized long getIndexBytes() {
+        return indexBytes;
+    }
+
+    /**
+     * @return off-heap memory used by cached data
+     */
+    public synchronized long getDataBytes() {
+        return dataBytes;
+    }
+
+    private Index getIndex(Path archive) throws IOException {
+        Path path = archive.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        synchronized (this) {
+            Index result = indexes.get(path);
+            if (result != null) {
+                if (result.lastModified == lastModified && result.size == size) {
+                    hits.increment();
+                    return result;
+                }
+                // archive was modified
+                indexes.remove(path);
+                indexBytes -= result.weight;
+                removeData(path);
+            }
+        }
+        misses.increment();
+        // load outside of the lock. Concurrent loads of the same archive are allowed
+        List<ArEntry> entries;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            entries = ArFile.readEntries(channel);
+        } finally {
+            channel.close();
+        }
+        Index result = new Index(path, lastModified, size, entries);
+        if (result.weight > maxIndexBytes) {
+            return result;
+        }
+        synchronized (this) {
+            Index previous = indexes.put(path, result);
+            if (previous != null) {
+                indexBytes -= previous.weight;
+                if (previous.lastModified != lastModified || previous.size != size) {
+                    removeData(path);
+                }
+            }
+            indexBytes += result.weight;
+            Iterator<Index> it = indexes.values().iterator();
+            while (indexBytes > maxIndexBytes && it.hasNext()) {
+                Index evicted = it.next();
+                indexBytes -= evicted.weight;
+                it.remove();
+                removeData(evicted.path);
+                evictions.increment();
+            }
+        }
+        return result;
+    }
+
+    // should be called under the lock
+    private void removeData(Path path) {
+        Iterator<Map.Entry<DataKey, ByteBuffer>> it = data.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<DataKey, ByteBuffer> cur = it.next();
+            if (cur.getKey().path.equals(path)) {
+                dataBytes -= cur.getValue().capacity();
+                it.remove();
+            }
+        }
+    }
+
+    private static ArEntry copy(ArEntry entry) {
+        ArEntry result = new ArEntry();
+        result.setFilename(entry.getFilename());
+        result.setFileModificationTimestamp(entry.getFileModificationTimestamp());
+        result.setOwnerId(entry.getOwnerId());
+        result.setGroupId(entry.getGroupId());
+        result.setFileMode(entry.getFileMode());
+        result.setSize(entry.getSize());
+        result.setHeaderOffset(entry.getHeaderOffset());
+        result.setDataOffset(entry.getDataOffset());
+        return result;
+    }
+
+    private static ByteBuffer read(Path path, ArEntry entry, boolean direct) throws IOException {
+        if (entry.getSize() > Integer.MAX_VALUE) {
+            throw new IOException("entry is too big to be loaded into memory: " + entry.getSize());
+        }
+        ByteBuffer result;
+        if (direct) {
+            result = ByteBuffer.allocateDirect((int) entry.getSize());
+        } else {
+            result = ByteBuffer.allocate((int) entry.getSize());
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ArFile.readFully(channel, result, entry.getDataOffset());
+        } finally {
+            channel.close();
+        }
+        result.flip();
+        return result;
+    }
+
+    private static class Index {
+
+        private final Path path;
+        private final long lastModified;
+        private final long size;
+        private final List<ArEntry> entries;
+        private final Map<String, ArEntry> byName;
+        private final long weight;
+
+        Index(Path path, long lastModified, long size, List<ArEntry> entries) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.entries = Collections.unmodifiableList(entries);
+            this.byName = new HashMap<String, ArEntry>(entries.size() * 2);
+            long curWeight = INDEX_OVERHEAD + path.toString().length() * 2L;
+            for (ArEntry cur : entries) {
+                if (!byName.containsKey(cur.getFilename())) {
+                    byName.put(cur.getFilename(), cur);
+                }
+                curWeight += ENTRY_OVERHEAD + cur.getFilename().length() * 2L;
+            }
+            this.weight = curWeight;
+        }
+    }
+
+    private static class DataKey {
+
+        private final Path path;
+        private final long lastModified;
+        private final long size;
+        private final long headerOffset;
+
+        DataKey(Path path, long lastModified, long size, long headerOffset) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.headerOffset = headerOffset;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = result * 31 + (int) (lastModified ^ (lastModified >>> 32));
+            result = result * 31 + (int) (size ^ (size >>> 32));
+            return result * 31 + (int) (headerOffset ^ (headerOffset >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof DataKey)) {
+                return false;
+            }
+            DataKey other = (DataKey) obj;
+            return headerOffset == other.headerOffset && lastModified == other.lastModified && size == other.size && path.equals(other.path);
+        }
+    }
+
+}
@@ -19,7 +19,6 @@ package com.google.code.ar;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.Charset;
 
 /**
  * InputStream to read AR files. Normal scenario:
@@ -46,6 +45,18 @@ import java.nio.charset.Charset;
  * }
  * </pre></blockquote>
  * 
+ * Entry data is loaded into ArEntry.getData() by default. Use streaming mode for big entries: 
+ * 
+ * <blockquote><pre>
+ * aris = new ArInputStream(is, true);
+ * while( (curEntry = aris.getNextEntry()) != null ) {
+ *      //read curEntry.getSize() bytes using aris.read()
+ * }
+ * </pre></blockquote>
+ * 
+ * Stream is read sequentially without relying on available(), so archives could be parsed directly from pipes, sockets 
+ * or decompression streams.
+ * 
  * Supports only GNU compatible AR data.
  * 
  * @author dernasherbrezon
@@ -53,9 +64,20 @@ import java.nio.charset.Charset;
  */
 public class ArInputStream extends FilterInputStream {
 
-    private static final Charset ASCII = Charset.forName("ASCII");
-    private byte[] longFileNames;
+    private final boolean streaming;
+    private final byte[] header = new byte[ArHeaders.HEADER_LENGTH];
+    private LongFileNames longFileNames;
     private boolean isClosed = false;
+    private long position = 0;
+    private long curEntryRemaining = 0;
+    private boolean isCurEntryPadded = false;
+    private ArDigests digests;
+    private ArEntry curEntry;
+    private byte[] skipBuffer;
+    private ArListener listener;
+    private TimedInputStream timed;
+    private ArEntry listenerEntry;
+    private long skippedBytes;
 
     /**
      * @param in - underlying InputStream. Cannot be closed or null
@@ -63,23 +85,62 @@ public class ArInputStream extends FilterInputStream {
      * @throws IllegalArgumentException if provided stream is null
      */
     public ArInputStream(InputStream in) throws IOException {
+        this(in, false);
+    }
+
+    /**
+     * In streaming mode entry data is not loaded into memory. getNextEntry() returns entry header only (ArEntry.getData() is null) 
+     * and entry data should be read using read() methods of this stream. Unread data is skipped on the next getNextEntry() call.
+     * @param in - underlying InputStream. Cannot be closed or null
+     * @param streaming - if true, entry data is read from this stream instead of ArEntry.getData()
+     * @throws IOException if provided stream is not AR stream
+     * @throws IllegalArgumentException if provided stream is null
+     */
+    public ArInputStream(InputStream in, boolean streaming) throws IOException {
         super(in);
         if (in == null) {
             throw new IllegalArgumentException("input stream cannot be null");
         }
+        this.streaming = streaming;
         readHeader();
     }
 
-    private void readHeader() throws IOException {
-        byte[] header = new byte[8];
-        long readBytes = read(header);
-        if (readBytes != 8) {
-            throw new IOException("unexpected end of stream. Expected: 8. Read: " + readBytes);
+    /**
+     * Digests of the entry data are computed while data is read and available using ArEntry.getDigest(). In streaming mode, 
+     * digest is available after all entry data has been read. Unread data is read instead of skipped on the next getNextEntry() call.
+     * Applies to the entries returned after this call.
+     * @param algorithms - "CRC32", "CRC32C" or any MessageDigest algorithm. i.e. "SHA-256". null to disable digests
+     * @throws IllegalArgumentException if algorithm is not supported
+     */
+    public void setDigestAlgorithms(String... algorithms) {
+        curEntry = null;
+        if (algorithms == null) {
+            digests = null;
+        } else {
+            digests = new ArDigests(algorithms);
         }
-        String headerStr = new String(header, ASCII);
-        if (headerStr.trim().length() == 0 || !headerStr.equals("!<arch>\n")) {
-            throw new IOException("not an \"AR\" archive");
+    }
+
+    /**
+     * Sets listener which receives callbacks for all entries read after this call.
+     * @param listener - listener. null to disable instrumentation
+     */
+    public void setListener(ArListener listener) {
+        finishListenerEntry();
+        if (listener == null && timed != null) {
+            in = timed.getUnderlying();
+            timed = null;
+        } else if (listener != null && timed == null) {
+            timed = new TimedInputStream(in);
+            in = timed;
         }
+        this.listener = listener;
+    }
+
+    private void readHeader() throws IOException {
+        byte[] signature = new byte[ArHeaders.SIGNATURE_LENGTH];
+        readField(signature);
+        ArHeaders.checkSignature(signature);
     }
 
     @Override
@@ -98,144 +159,206 @@ public class ArInputStream extends FilterInputStream {
     }
 
     /**
-     * Get next entry from AR stream.
-     * @return null if end of stream reached.
-     * @throws IOException if stream has been closed or the underlaying stream is closed or isn't available or corrupted archive or unsupported AR archive format
+     * Reads data of the current entry. Returns -1 when the end of the current entry is reached.
      */
-    public ArEntry getNextEntry() throws IOException {
-        if (available() == 0) {
-            return null;
-        }
-
-        if (isClosed) {
-            throw new IOException("Stream closed");
-        }
-
-        byte[] fileName = new byte[16];
-        long readBytes = read(fileName);
-        if (readBytes != 16) {
-            throw new IOException("unexpected end of stream. Expected: 16. Read: " + readBytes);
-        }
-        byte[] timestamp = new byte[12];
-        readBytes = read(timestamp);
-        if (readBytes != 12) {
-            throw new IOException("unexpected end of stream. Expected: 12. Read: " + readBytes);
+    @Override
+    public int read() throws IOException {
+        if (curEntryRemaining <= 0) {
+            return -1;
         }
-        byte[] ownerId = new byte[6];
-        readBytes = read(ownerId);
-        if (readBytes != 6) {
-            throw new IOException("unexpected end of stream. Expected: 6. Read: " + readBytes);
+        int result = in.read();
+        if (result == -1) {
+            throw new IOException("unexpected end of stream. Expected: " + curEntryRemaining + ". Read: 0");
         }
-        byte[] groupId = new byte[6];
-        readBytes = read(groupId);
-        if (readBytes != 6) {
-            throw new IOException("unexpected end of stream. Expected: 6. Read: " + readBytes);
+        curEntryRemaining--;
+        position++;
+        if (curEntry != null) {
+            digests.update(result);
+            finishDigests();
         }
-        byte[] fileMode = new byte[8];
-        readBytes = read(fileMode);
-        if (readBytes != 8) {
-            throw new IOException("unexpected end of stream. Expected: 8. Read: " + readBytes);
+        return result;
+    }
+
+    /**
+     * Reads data of the current entry. Returns -1 when the end of the current entry is reached.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
         }
-        byte[] fileSize = new byte[10];
-        readBytes = read(fileSize);
-        if (readBytes != 10) {
-            throw new IOException("unexpected end of stream. Expected: 10. Read: " + readBytes);
+        if (curEntryRemaining <= 0) {
+            return -1;
         }
-        byte[] magic = new byte[2];
-        readBytes = read(magic);
-        if (readBytes != 2) {
-            throw new IOException("unexpected end of stream. Expected: 2. Read: " + readBytes);
+        int readBytes = in.read(b, off, (int) Math.min(len, curEntryRemaining));
+        if (readBytes == -1) {
+            throw new IOException("unexpected end of stream. Expected: " + curEntryRemaining + ". Read: 0");
         }
-        if (magic[0] != 0x60 || magic[1] != 0x0A) {
-            throw new IOException("corrupted archive data");
+        curEntryRemaining -= readBytes;
+        position += readBytes;
+        if (curEntry != null) {
+            digests.update(b, off, readBytes);
+            finishDigests();
         }
+        return readBytes;
+    }
 
-        ArEntry result = new ArEntry();
-        String filenameStr = new String(fileName, ASCII).trim();
-        result.setFilename(filenameStr);
-        String timeStampStr = new String(timestamp, ASCII).trim();
-        if (timeStampStr.length() != 0) {
-            result.setFileModificationTimestamp(Long.valueOf(timeStampStr + "000").longValue());
-        } else {
-            result.setFileModificationTimestamp(0l);
+    /**
+     * Skips data of the current entry.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0 || curEntryRemaining <= 0) {
+            return 0;
         }
-        String ownerIdStr = new String(ownerId, ASCII).trim();
-        if (ownerIdStr.length() != 0) {
-            result.setOwnerId(Integer.valueOf(ownerIdStr).intValue());
-        } else {
-            result.setOwnerId(0);
+        if (curEntry != null) {
+            // skipped data should be digested as well
+            return read(getSkipBuffer(), 0, (int) Math.min(n, getSkipBuffer().length));
         }
-        String groupIdStr = new String(groupId, ASCII).trim();
-        if (groupIdStr.length() != 0) {
-            result.setGroupId(Integer.valueOf(groupIdStr).intValue());
-        } else {
-            result.setGroupId(0);
+        long result = in.skip(Math.min(n, curEntryRemaining));
+        curEntryRemaining -= result;
+        position += result;
+        skippedBytes += result;
+        return result;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), curEntryRemaining);
+    }
+
+    /**
+     * Get next entry from AR stream. Unread data of the previous entry is skipped.
+     * @return null if end of stream reached.
+     * @throws IOException if stream has been closed or the underlaying stream is closed or isn't available or corrupted archive or unsupported AR archive format
+     */
+    public ArEntry getNextEntry() throws IOException {
+        return getNextEntry(null);
+    }
+
+    /**
+     * Get next entry accepted by the filter. Data of the rejected entries is skipped using InputStream.skip() without reading it.
+     * Unread data of the previous entry is skipped.
+     * @param filter - entry filter. If null, all entries are accepted
+     * @return null if end of stream reached.
+     * @throws IOException if stream has been closed or the underlaying stream is closed or isn't available or corrupted archive or unsupported AR archive format
+     */
+    public ArEntry getNextEntry(ArEntryFilter filter) throws IOException {
+        if (isClosed) {
+            throw new IOException("Stream closed");
         }
-        String fileModeStr = new String(fileMode, ASCII).trim();
-        if (fileModeStr.length() != 0) {
-            result.setFileMode(Integer.valueOf(fileModeStr).intValue());
-        } else {
-            result.setFileMode(0);
-        }
-        String fileSizeStr = new String(fileSize, ASCII).trim();
-        if (fileSizeStr.length() == 0) {
-            throw new IOException("corrupted archive data. invalid file data lenght");
-        }
-        byte[] data = new byte[Integer.valueOf(fileSizeStr).intValue()];
-        readBytes = read(data);
-        if (readBytes != data.length) {
-            throw new IOException("unexpected end of stream. Expected: " + data.length + ". Read: " + readBytes);
-        }
-        result.setData(data);
-        if (data.length % 2 == 1) {
-            long skippedBytes = skip(1);
-            if (skippedBytes != 1) {
-                throw new IOException("unexpected end of stream. Expected: 1. Read: " + skippedBytes);
+
+        while (true) {
+            skipCurEntry();
+            if (listener != null) {
+                finishListenerEntry();
+            }
+
+            // end of archive is allowed only at the header boundary. available() is not reliable for pipes and sockets
+            long headerOffset = position;
+            int headerBytes = readFully(header);
+            if (headerBytes == 0) {
+                return null;
             }
+            if (headerBytes != header.length) {
+                throw new IOException("unexpected end of stream. Expected: " + header.length + ". Read: " + headerBytes);
+            }
+            ArEntry result = ArHeaders.parse(header, longFileNames);
+            result.setHeaderOffset(headerOffset);
+            result.setDataOffset(position);
+            curEntryRemaining = result.getSize();
+            isCurEntryPadded = result.getSize() % 2 == 1;
+            curEntry = null;
+            if (listener != null) {
+                listenerEntry = result;
+                skippedBytes = 0;
+                listener.entryStarted(result, false);
+            }
+
+            if (ArHeaders.isLongFileNames(result)) {
+                longFileNames = new LongFileNames(readCurEntry());
+                continue;
+            }
+
+            if (filter != null && !filter.accept(result)) {
+                continue;
+            }
+
+            if (digests != null) {
+                digests.reset();
+                curEntry = result;
+            }
+
+            if (!streaming) {
+                result.setData(readCurEntry());
+            } else if (curEntry != null) {
+                finishDigests();
+            }
+
+            return result;
+        }
+    }
+
+    private byte[] readCurEntry() throws IOException {
+        if (curEntryRemaining > Integer.MAX_VALUE) {
+            throw new IOException("entry is too big to be loaded into memory: " + curEntryRemaining + ". Use streaming mode");
         }
-        if (filenameStr.equals("//") && result.getFileModificationTimestamp() == 0) {
-            longFileNames = result.getData();
-            result = getNextEntry();
+        byte[] data = new byte[(int) curEntryRemaining];
+        readField(data);
+        curEntryRemaining = 0;
+        if (curEntry != null) {
+            digests.update(data, 0, data.length);
+            finishDigests();
         }
+        skipCurEntry();
+        return data;
+    }
 
-        if (!filenameStr.equals("//") && longFileNames != null) {
-            result.setFilename(resolveName(result.getFilename()));
+    private void finishDigests() {
+        if (curEntryRemaining == 0) {
+            curEntry.setDigests(digests.finish());
+            curEntry = null;
         }
+    }
 
-        return result;
+    private byte[] getSkipBuffer() {
+        if (skipBuffer == null) {
+            skipBuffer = new byte[8192];
+        }
+        return skipBuffer;
     }
 
-    private String resolveName(String offsetName) throws IOException {
-        if (!offsetName.startsWith("/")) {
-            if (!offsetName.endsWith("/")) {
-                throw new IOException("corrupted archive data. invalid short file name: " + offsetName);
-            }
-            return offsetName.substring(0, offsetName.length() - 1);
-        }
-        int offset;
-        try {
-            offset = Integer.valueOf(offsetName.substring(1).trim()).intValue();
-        } catch(Throwable e) {
-            throw new IOException("corrupted archive data. invalid long file name offset: " + offsetName);
-        }
-        if (offset > longFileNames.length - 1) {
-            throw new IOException("corrupted archive data. invalid long file name offset: " + offset);
-        }
-        int end = offset;
-        for (int i = offset; i < longFileNames.length; i++) {
-            if (longFileNames[i] == '/') {
-                if (i == longFileNames.length - 1 || longFileNames[i + 1] == '\n') {
-                    end = i;
-                    break;
-                }
+    private void skipCurEntry() throws IOException {
+        while (curEntry != null) {
+            if (read(getSkipBuffer(), 0, getSkipBuffer().length) < 0) {
+                break;
             }
         }
-        if (end == offset) {
-            throw new IOException("corrupted archive data. invalid long file name offset: " + offset);
+        skippedBytes += curEntryRemaining;
+        position += ArStreams.skipEntry(in, curEntryRemaining, isCurEntryPadded);
+        curEntryRemaining = 0;
+        isCurEntryPadded = false;
+    }
+
+    private void finishListenerEntry() {
+        if (listenerEntry == null) {
+            return;
+        }
+        listener.entryFinished(listenerEntry, listenerEntry.getSize() - skippedBytes, skippedBytes, timed.getAndResetNanos());
+        listenerEntry = null;
+    }
+
+    private void readField(byte[] field) throws IOException {
+        int readBytes = readFully(field);
+        if (readBytes != field.length) {
+            throw new IOException("unexpected end of stream. Expected: " + field.length + ". Read: " + readBytes);
         }
-        byte[] filename = new byte[end - offset];
-        System.arraycopy(longFileNames, offset, filename, 0, filename.length);
-        return new String(filename, ASCII).trim();
+    }
+
+    private int readFully(byte[] field) throws IOException {
+        int readBytes = ArStreams.readFully(in, field, 0, field.length);
+        position += readBytes;
+        return readBytes;
     }
 
     /**
@@ -243,6 +366,9 @@ public class ArInputStream extends FilterInputStream {
      */
     @Override
     public void close() throws IOException {
+        if (listener != null) {
+            finishListenerEntry();
+        }
         super.close();
         isClosed = true;
     }
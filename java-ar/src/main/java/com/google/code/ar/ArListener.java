@@ -0,0 +1,56 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Receives per entry callbacks from ArInputStream, ArOutputStream and ArFileOutputStream. Callbacks are invoked from 
+ * the thread which uses stream. Instrumentation is disabled if listener is not set.
+ * 
+ * @author dernasherbrezon
+ * @see ArStatistics
+ * @see JfrArListener
+ */
+public interface ArListener {
+
+    /**
+     * Entry header has been read or written. GNU long file names table is reported as entry with "//" filename.
+     * @param entry - entry. The same instance is passed to entryFinished
+     * @param write - true if entry is written by ArOutputStream or ArFileOutputStream
+     */
+    void entryStarted(ArEntry entry, boolean write);
+
+    /**
+     * Entry data has been processed.
+     * @param entry - entry
+     * @param dataBytes - number of entry data bytes read or written
+     * @param skippedBytes - number of entry data bytes skipped without reading
+     * @param ioNanos - time blocked in the underlying stream or file while processing entry header and data
+     */
+    void entryFinished(ArEntry entry, long dataBytes, long skippedBytes, long ioNanos);
+
+    /**
+     * Data is about to be forced to the storage device
+     */
+    void syncStarted();
+
+    /**
+     * Data has been forced to the storage device
+     * @param nanos - time of the sync
+     */
+    void syncFinished(long nanos);
+
+}
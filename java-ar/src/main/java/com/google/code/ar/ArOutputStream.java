@@ -21,6 +21,8 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * OutputStream to write AR files. Normal scenario:
@@ -45,6 +47,16 @@ import java.nio.charset.Charset;
  * </pre></blockquote>
  * 
  * If ArEntry contains long file name, then ArOutputStream produces GNU compatible AR data.
+ * <p>Entries could be written one by one without keeping entry data in memory:</p>
+ * <blockquote><pre>
+ * aros = new ArOutputStream(os);
+ * aros.setLongFileNames(longFileNames); //optional. only if some entries have file names longer than 16 bytes
+ * for( int i=0;i&lt;entries.lenght;i++) {
+ *      aros.putNextEntry(entries[i], sizes[i]);
+ *      //write exactly sizes[i] bytes using aros.write()
+ *      aros.closeEntry();
+ * }
+ * </pre></blockquote>
  * 
  * @author dernasherbrezon
  *
@@ -55,7 +67,17 @@ public class ArOutputStream extends FilterOutputStream {
     final static byte[] MAGIC = new byte[]{96, 10};
     final static byte[] HEADER = new byte[]{33, 60, 97, 114, 99, 104, 62, 10};
     private boolean isEntriesPresent = false;
+    private boolean isHeaderPresent = false;
     private boolean isClosed = false;
+    private ArHeaderEncoder encoder = null;
+    private Map<String, String> longFileNames = null;
+    private ArEntry curEntry = null;
+    private long curDeclaredSize = 0;
+    private long curWroteBytes = 0;
+    private ArDigests digests = null;
+    private ArListener listener = null;
+    private TimedOutputStream timed = null;
+    private boolean deterministic = false;
 
     /**
      * @param out - underlaying OutputStream. Cannot be closed or null
@@ -68,8 +90,59 @@ public class ArOutputStream extends FilterOutputStream {
         }
     }
 
+    /**
+     * Digests of the entry data are computed while data is written and available using ArEntry.getDigest() after 
+     * the entry is written. Applies to the entries written after this call.
+     * @param algorithms - "CRC32", "CRC32C" or any MessageDigest algorithm. i.e. "SHA-256". null to disable digests
+     * @throws IllegalArgumentException if algorithm is not supported
+     * @throws IllegalStateException if current entry is not closed
+     */
+    public void setDigestAlgorithms(String... algorithms) {
+        if (curEntry != null) {
+            throw new IllegalStateException("entry is not closed");
+        }
+        if (algorithms == null) {
+            digests = null;
+        } else {
+            digests = new ArDigests(algorithms);
+        }
+    }
+
+    /**
+     * In deterministic mode output depends only on the entries data, file names and timestamps set by caller. Entries without 
+     * timestamp get 0 instead of the current time. Owner id and group id are 0 and file mode is 644. Similar to "ar D".
+     * Applies to the entries written after this call.
+     * @param deterministic - true to enable deterministic mode. false by default
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+        if (encoder != null) {
+            encoder.setDeterministic(deterministic);
+        }
+    }
+
+    /**
+     * Sets listener which receives callbacks for all entries written after this call.
+     * @param listener - listener. null to disable instrumentation
+     * @throws IllegalStateException if current entry is not closed
+     */
+    public void setListener(ArListener listener) {
+        if (curEntry != null) {
+            throw new IllegalStateException("entry is not closed");
+        }
+        if (listener == null && timed != null) {
+            out = timed.getUnderlying();
+            timed = null;
+        } else if (listener != null && timed == null) {
+            timed = new TimedOutputStream(out);
+            out = timed;
+        }
+        this.listener = listener;
+    }
+
     /**
      * Write entries to the underlaying OutputStream. Must be called once for every OutputStream. Could be empty or null.
+     * Cannot be used together with putNextEntry.
      * @param entries - entries
      * @throws IOException if stream has been closed<br>underlaying stream has been closed<br>second attempt to set entries<br>
      * @throws IllegalArgumentException if provided entries contain invalid data.
@@ -79,7 +152,7 @@ public class ArOutputStream extends FilterOutputStream {
         if (isClosed) {
             throw new IOException("stream closed");
         }
-        if (isEntriesPresent) {
+        if (isEntriesPresent || isHeaderPresent) {
             throw new IOException("archive entries already specified");
         }
         if (entries != null) {
@@ -87,7 +160,7 @@ public class ArOutputStream extends FilterOutputStream {
                 ArEntryValidator.validateInMemoryEntry(entries[i]);
             }
         }
-        write(HEADER);
+        writeHeader();
         if (entries == null || entries.length == 0) {
             isEntriesPresent = true;
             return;
@@ -95,8 +168,6 @@ public class ArOutputStream extends FilterOutputStream {
 
         String[] newNamesInsteadOfLong = null;
         if (hasLongNames(entries)) {
-            //write "//" -> empty timestamp -> empty owner id -> empty group id -> empty file mode  
-            write(new byte[]{47, 47, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32});
             newNamesInsteadOfLong = new String[entries.length];
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             int namesDataOffset = 0;
@@ -110,56 +181,203 @@ public class ArOutputStream extends FilterOutputStream {
                 baos.write(curName);
                 namesDataOffset += curName.length;
             }
-            //filesize
-            write(String.valueOf(baos.size()), 10);
-            write(MAGIC);
-            //actual data
-            write(baos.toByteArray());
-            if (baos.size() % 2 != 0) { //align to 2
-                write('\n');
-            }
+            writeLongFileNamesEntry(baos);
         }
 
-        String time = getCurTime();
-
         for (int i = 0; i < entries.length; i++) {
             ArEntry curEntry = entries[i];
             if (curEntry == null) {
                 continue;
             }
             if (newNamesInsteadOfLong != null) {
-                write(newNamesInsteadOfLong[i], 16);
+                writeEntryHeader(newNamesInsteadOfLong[i], curEntry, curEntry.getData().length);
             } else {
-                write(curEntry.getFilename(), 16);
+                writeEntryHeader(curEntry.getFilename(), curEntry, curEntry.getData().length);
             }
-            write(time, 12);
-            write(String.valueOf(curEntry.getOwnerId()), 6);
-            write(String.valueOf(curEntry.getGroupId()), 6);
-            write(String.valueOf(curEntry.getFileMode()), 8);
-            write(String.valueOf(curEntry.getData().length), 10);
-            write(MAGIC);
-            write(curEntry.getData());
+            if (listener != null) {
+                listener.entryStarted(curEntry, true);
+            }
+            out.write(curEntry.getData());
             if (curEntry.getData().length % 2 != 0) {
-                write('\n');
+                out.write('\n');
+            }
+            if (listener != null) {
+                listener.entryFinished(curEntry, curEntry.getData().length, 0, timed.getAndResetNanos());
+            }
+            if (digests != null) {
+                digests.update(curEntry.getData(), 0, curEntry.getData().length);
+                curEntry.setDigests(digests.finish());
             }
         }
         isEntriesPresent = true;
     }
 
-    static String getCurTime() {
-        String curMem = String.valueOf(System.currentTimeMillis());
-        return curMem.substring(0, curMem.length() - 3);
+    /**
+     * Declare file names of the entries which will be written using putNextEntry. Required only if some file names are longer than 16 bytes.
+     * Must be called before the first putNextEntry. Entries with file names which were not declared could be written only if 
+     * their file names are shorter than 16 bytes.
+     * @param filenames - file names of the entries
+     * @throws IOException if stream has been closed<br>underlaying stream has been closed<br>entries already started
+     */
+    public void setLongFileNames(String[] filenames) throws IOException {
+        if (isClosed) {
+            throw new IOException("stream closed");
+        }
+        if (isEntriesPresent || isHeaderPresent) {
+            throw new IOException("archive entries already specified");
+        }
+        writeHeader();
+        longFileNames = new HashMap<String, String>();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (int i = 0; i < filenames.length; i++) {
+            if (filenames[i] == null || longFileNames.containsKey(filenames[i])) {
+                continue;
+            }
+            longFileNames.put(filenames[i], "/" + baos.size());
+            baos.write((filenames[i] + "/\n").getBytes(ASCII));
+        }
+        writeLongFileNamesEntry(baos);
+    }
+
+    /**
+     * Closes previous entry if it wasnt closed and starts new entry. Exactly declaredSize bytes of entry data should be written 
+     * before the next entry or closeEntry().
+     * @param entry - entry. ArEntry.data is not used
+     * @param declaredSize - size of the entry data
+     * @throws IOException if stream has been closed<br>underlaying stream has been closed<br>entries were set using setEntries<br>long file name wasn't declared
+     * @throws IllegalArgumentException if provided entry contains invalid data.
+     */
+    public void putNextEntry(ArEntry entry, long declaredSize) throws IOException {
+        if (isClosed) {
+            throw new IOException("stream closed");
+        }
+        if (isEntriesPresent) {
+            throw new IOException("archive entries already specified");
+        }
+        if (curEntry != null) {
+            closeEntry();
+        }
+        ArEntryValidator.validate(entry);
+        if (entry == null) {
+            return;
+        }
+        if (declaredSize < 0) {
+            throw new IllegalArgumentException("entry size should be positive. got: " + declaredSize);
+        }
+        String name;
+        if (longFileNames != null) {
+            name = longFileNames.get(entry.getFilename());
+            if (name == null) {
+                // names should be terminated by "/" if long names table is present
+                name = entry.getFilename() + "/";
+            }
+        } else {
+            name = entry.getFilename();
+        }
+        if (name.length() > 16) {
+            throw new IOException("long file name should be declared using setLongFileNames: " + entry.getFilename());
+        }
+        writeHeader();
+        writeEntryHeader(name, entry, declaredSize);
+        curEntry = entry;
+        curDeclaredSize = declaredSize;
+        curWroteBytes = 0;
+        if (listener != null) {
+            listener.entryStarted(entry, true);
+        }
+        if (digests != null) {
+            digests.reset();
+        }
+    }
+
+    /**
+     * Verifies that declared number of bytes was written and closes current entry.
+     * @throws IOException if stream has been closed<br>underlaying stream has been closed<br>entry data size doesn't match declared size
+     */
+    public void closeEntry() throws IOException {
+        if (curEntry == null) {
+            return;
+        }
+        if (curWroteBytes != curDeclaredSize) {
+            throw new IOException("entry data size doesn't match declared size. Expected: " + curDeclaredSize + ". Wrote: " + curWroteBytes);
+        }
+        if (curWroteBytes % 2 != 0) {
+            out.write('\n');
+        }
+        if (digests != null) {
+            curEntry.setDigests(digests.finish());
+        }
+        if (listener != null) {
+            listener.entryFinished(curEntry, curWroteBytes, 0, timed.getAndResetNanos());
+        }
+        curEntry = null;
     }
 
-    private void write(String str, int maxLenght) throws IOException {
-        byte[] data = str.getBytes(ASCII);
-        if (data.length > maxLenght) {
-            throw new IOException("invalid string data");
+    /**
+     * Writes data of the current entry.
+     */
+    @Override
+    public void write(int b) throws IOException {
+        checkCurEntry(1);
+        out.write(b);
+        curWroteBytes++;
+        if (digests != null) {
+            digests.update(b);
         }
-        write(data);
-        for (int i = data.length; i < maxLenght; i++) {
-            write((byte) 32);
+    }
+
+    /**
+     * Writes data of the current entry.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkCurEntry(len);
+        out.write(b, off, len);
+        curWroteBytes += len;
+        if (digests != null) {
+            digests.update(b, off, len);
+        }
+    }
+
+    private void checkCurEntry(int len) throws IOException {
+        if (curEntry == null) {
+            throw new IOException("entry is not started");
+        }
+        if (curWroteBytes + len > curDeclaredSize) {
+            throw new IOException("entry data exceeds declared size: " + curDeclaredSize);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        if (isHeaderPresent) {
+            return;
         }
+        out.write(HEADER);
+        encoder = new ArHeaderEncoder();
+        encoder.setDeterministic(deterministic);
+        isHeaderPresent = true;
+    }
+
+    private void writeLongFileNamesEntry(ByteArrayOutputStream baos) throws IOException {
+        ArEntry entry = null;
+        if (listener != null) {
+            entry = new ArEntry();
+            entry.setFilename(ArHeaders.LONG_FILE_NAMES);
+            entry.setSize(baos.size());
+            listener.entryStarted(entry, true);
+        }
+        out.write(encoder.encodeLongFileNames(baos.size()), 0, ArHeaders.HEADER_LENGTH);
+        baos.writeTo(out);
+        if (baos.size() % 2 != 0) { //align to 2
+            out.write('\n');
+        }
+        if (listener != null) {
+            listener.entryFinished(entry, baos.size(), 0, timed.getAndResetNanos());
+        }
+    }
+
+    private void writeEntryHeader(String name, ArEntry entry, long size) throws IOException {
+        out.write(encoder.encode(name, entry, size), 0, ArHeaders.HEADER_LENGTH);
     }
 
     private static boolean hasLongNames(ArEntry[] entries) {
@@ -177,12 +395,18 @@ public class ArOutputStream extends FilterOutputStream {
     }
 
     /**
-     * Closes underlying stream
+     * Closes current entry and underlying stream
      */
     @Override
     public void close() throws IOException {
-        super.close();
-        isClosed = true;
+        try {
+            if (!isClosed) {
+                closeEntry();
+            }
+        } finally {
+            super.close();
+            isClosed = true;
+        }
     }
 
 }
@@ -0,0 +1,44 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Receives results of ArScanner. Methods are called concurrently from the scanner threads, so implementation should be thread safe.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public interface ArScanListener {
+
+    /**
+     * Called for every entry of the archive in archive order. GNU long file names table is not reported.
+     * @param archive - scanned archive
+     * @param entry - entry header. ArEntry.data is not loaded
+     */
+    void onEntry(Path archive, ArEntry entry);
+
+    /**
+     * Archive cannot be read or it is corrupted. Entries of such archive are not reported.
+     * @param archive - scanned archive
+     * @param e - error
+     */
+    void onError(Path archive, IOException e);
+
+}
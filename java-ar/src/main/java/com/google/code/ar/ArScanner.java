@@ -0,0 +1,242 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scans headers of many archives concurrently. Only entry headers are read: data is skipped using positional reads. 
+ * Results are passed to the listener as soon as archive is scanned. Every scanner thread keeps at most one archive 
+ * open, so number of open files is limited by parallelism. Normal scenario:
+ * 
+ * <blockquote><pre>
+ * ArScanner scanner = new ArScanner(16);
+ * scanner.scan(Paths.get("/var/cache/apt/archives"), new ArScanListener() {
+ *      public void onEntry(Path archive, ArEntry entry) {
+ *          //process entry
+ *      }
+ *      public void onError(Path archive, IOException e) {
+ *          //do logging
+ *      }
+ * }, ".deb", ".a");
+ * </pre></blockquote>
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArScanner {
+
+    private final int parallelism;
+
+    /**
+     * @param parallelism - number of scanner threads. Also maximum number of archives opened at the same time
+     * @throws IllegalArgumentException if parallelism is less than 1
+     */
+    public ArScanner(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism should be positive. got: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Scans regular files in the directory and its subdirectories. Files and subdirectories which cannot be read 
+     * are reported to the listener.
+     * @param dir - directory
+     * @param listener - receives entries and errors
+     * @param extensions - file name suffixes of the archives. i.e. ".deb". All files are scanned if not specified
+     * @return number of successfully scanned archives
+     * @throws IOException if unable to read directory or scan was interrupted
+     * @throws RuntimeException if listener failed. Scan is stopped on the first failure
+     */
+    public int scan(final Path dir, final ArScanListener listener, final String... extensions) throws IOException {
+        final Scan scan = new Scan(listener);
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (scan.isFailed()) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (attrs.isRegularFile() && matches(file, extensions)) {
+                        scan.submit(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    if (file.equals(dir)) {
+                        throw exc;
+                    }
+                    listener.onError(file, exc);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path subdir, IOException exc) throws IOException {
+                    if (exc != null) {
+                        listener.onError(subdir, exc);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return scan.finish();
+        } finally {
+            scan.close();
+        }
+    }
+
+    /**
+     * Scans archives. Paths are consumed lazily, so huge lists could be generated on the fly. Named differently from 
+     * scan(Path, ...), because Path is Iterable&lt;Path&gt; itself.
+     * @param archives - archives
+     * @param listener - receives entries and errors
+     * @return number of successfully scanned archives
+     * @throws IOException if scan was interrupted
+     * @throws RuntimeException if listener failed. Scan is stopped on the first failure
+     */
+    public int scanArchives(Iterable<Path> archives, ArScanListener listener) throws IOException {
+        Scan scan = new Scan(listener);
+        try {
+            for (Path cur : archives) {
+                if (scan.isFailed()) {
+                    break;
+                }
+                scan.submit(cur);
+            }
+            return scan.finish();
+        } finally {
+            scan.close();
+        }
+    }
+
+    private static boolean scan(Path archive, ArScanListener listener) {
+        List<ArEntry> entries;
+        try {
+            FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ);
+            try {
+                entries = ArFile.readEntries(channel);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            listener.onError(archive, e);
+            return false;
+        }
+        for (ArEntry cur : entries) {
+            listener.onEntry(archive, cur);
+        }
+        return true;
+    }
+
+    private static boolean matches(Path file, String[] extensions) {
+        if (extensions == null || extensions.length == 0) {
+            return true;
+        }
+        String name = file.getFileName().toString();
+        for (String cur : extensions) {
+            if (name.endsWith(cur)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Scan {
+
+        private final ArScanListener listener;
+        private final AtomicInteger scanned = new AtomicInteger();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        // limit number of queued archives
+        private final Semaphore queued = new Semaphore(parallelism * 2);
+        private final ExecutorService executor;
+
+        Scan(ArScanListener listener) {
+            if (listener == null) {
+                throw new IllegalArgumentException("listener cannot be null");
+            }
+            this.listener = listener;
+            this.executor = Executors.newFixedThreadPool(parallelism);
+        }
+
+        boolean isFailed() {
+            return failure.get() != null;
+        }
+
+        void submit(final Path archive) throws IOException {
+            try {
+                queued.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("scan interrupted");
+            }
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        if (!isFailed() && scan(archive, listener)) {
+                            scanned.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        queued.release();
+                    }
+                }
+            });
+        }
+
+        int finish() throws IOException {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("scan interrupted");
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            return scanned.get();
+        }
+
+        void close() {
+            executor.shutdownNow();
+        }
+    }
+
+}
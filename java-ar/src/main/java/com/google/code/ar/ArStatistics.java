@@ -0,0 +1,95 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative counters. Thread safe, so the same instance could be shared between several streams.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArStatistics implements ArListener {
+
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder headerBytes = new LongAdder();
+    private final LongAdder dataBytes = new LongAdder();
+    private final LongAdder skippedBytes = new LongAdder();
+    private final LongAdder ioNanos = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder syncNanos = new LongAdder();
+
+    @Override
+    public void entryStarted(ArEntry entry, boolean write) {
+        entries.increment();
+        headerBytes.add(ArHeaders.HEADER_LENGTH);
+    }
+
+    @Override
+    public void entryFinished(ArEntry entry, long dataBytes, long skippedBytes, long ioNanos) {
+        this.dataBytes.add(dataBytes);
+        this.skippedBytes.add(skippedBytes);
+        this.ioNanos.add(ioNanos);
+    }
+
+    @Override
+    public void syncStarted() {
+        //do nothing
+    }
+
+    @Override
+    public void syncFinished(long nanos) {
+        syncs.increment();
+        syncNanos.add(nanos);
+    }
+
+    /**
+     * @return number of entries including GNU long file names table
+     */
+    public long getEntries() {
+        return entries.sum();
+    }
+
+    public long getHeaderBytes() {
+        return headerBytes.sum();
+    }
+
+    public long getDataBytes() {
+        return dataBytes.sum();
+    }
+
+    public long getSkippedBytes() {
+        return skippedBytes.sum();
+    }
+
+    /**
+     * @return time blocked in the underlying streams or files excluding syncs
+     */
+    public long getIoNanos() {
+        return ioNanos.sum();
+    }
+
+    public long getSyncs() {
+        return syncs.sum();
+    }
+
+    public long getSyncNanos() {
+        return syncNanos.sum();
+    }
+
+}
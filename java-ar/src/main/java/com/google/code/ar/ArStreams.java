@@ -0,0 +1,80 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reading and skipping helpers shared by the stream based AR readers.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class ArStreams {
+
+    /**
+     * Underlying stream might return less bytes than requested. i.e. pipes, sockets or decompression streams
+     * @return number of bytes read. Less than len only if end of stream reached
+     */
+    static int readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+        int result = 0;
+        while (result < len) {
+            int cur = in.read(b, off + result, len - result);
+            if (cur == -1) {
+                break;
+            }
+            result += cur;
+        }
+        return result;
+    }
+
+    /**
+     * InputStream.skip() might skip less bytes than requested or nothing at all. Such streams are read instead
+     * @return number of bytes skipped. Less than count only if end of stream reached
+     */
+    static long skip(InputStream in, long count) throws IOException {
+        long result = 0;
+        while (result < count) {
+            long cur = in.skip(count - result);
+            if (cur <= 0) {
+                if (in.read() == -1) {
+                    break;
+                }
+                cur = 1;
+            }
+            result += cur;
+        }
+        return result;
+    }
+
+    /**
+     * Skips remaining entry data and padding. Last entry might be written without padding
+     * @param remaining - unread entry data
+     * @param padded - if true, then entry data is followed by the padding byte
+     * @return number of bytes skipped
+     * @throws IOException if stream ends before the entry data
+     */
+    static long skipEntry(InputStream in, long remaining, boolean padded) throws IOException {
+        long result = skip(in, padded ? remaining + 1 : remaining);
+        if (result < remaining) {
+            throw new IOException("unexpected end of stream. Expected: " + (remaining - result) + ". Read: 0");
+        }
+        return result;
+    }
+
+}
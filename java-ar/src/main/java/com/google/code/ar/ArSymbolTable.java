@@ -0,0 +1,200 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GNU/SysV symbol table (armap). Stored in "/" entry with 32-bit offsets or in "/SYM64/" entry with 64-bit offsets.
+ * Maps symbol to the header offset of the entry which defines it. Normal scenario:
+ * 
+ * <blockquote><pre>
+ * ArFile arFile = new ArFile("libfoo.a");
+ * ArEntry entry = arFile.getEntryBySymbol("foo_init");
+ * </pre></blockquote>
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class ArSymbolTable {
+
+    static final String SYMBOL_TABLE = "/";
+    static final String SYMBOL_TABLE_64 = "/SYM64/";
+
+    private final Map<String, Long> offsets;
+    private final String[] symbols;
+    private final long[] memberOffsets;
+    private final int offsetSize;
+
+    private ArSymbolTable(Map<String, Long> offsets, String[] symbols, long[] memberOffsets, int offsetSize) {
+        this.offsets = offsets;
+        this.symbols = symbols;
+        this.memberOffsets = memberOffsets;
+        this.offsetSize = offsetSize;
+    }
+
+    /**
+     * Parse symbol table from entry read by <code>com.google.code.ar.ArInputStream</code>
+     * @param entry - symbol table entry with data
+     * @return symbol table
+     * @throws IOException if entry is not a symbol table or symbol table is corrupted
+     * @throws IllegalArgumentException if entry data is not specified
+     */
+    public static ArSymbolTable parse(ArEntry entry) throws IOException {
+        if (entry.getData() == null) {
+            throw new IllegalArgumentException("entry data should be specified");
+        }
+        return parse(entry, ByteBuffer.wrap(entry.getData()));
+    }
+
+    static ArSymbolTable parse(ArEntry entry, ByteBuffer data) throws IOException {
+        int offsetSize;
+        if (entry.getFilename().equals(SYMBOL_TABLE)) {
+            offsetSize = 4;
+        } else if (entry.getFilename().equals(SYMBOL_TABLE_64)) {
+            offsetSize = 8;
+        } else {
+            throw new IOException("not a symbol table: " + entry.getFilename());
+        }
+        try {
+            long count = readOffset(data, offsetSize);
+            if (count < 0 || count > data.remaining() / offsetSize) {
+                throw new IOException("corrupted symbol table. invalid number of symbols: " + count);
+            }
+            long[] memberOffsets = new long[(int) count];
+            for (int i = 0; i < memberOffsets.length; i++) {
+                memberOffsets[i] = readOffset(data, offsetSize);
+            }
+            Map<String, Long> result = new HashMap<String, Long>(memberOffsets.length * 2);
+            String[] symbols = new String[memberOffsets.length];
+            byte[] name = new byte[64];
+            for (int i = 0; i < memberOffsets.length; i++) {
+                int length = 0;
+                byte cur;
+                while ((cur = data.get()) != 0) {
+                    if (length == name.length) {
+                        byte[] newName = new byte[name.length * 2];
+                        System.arraycopy(name, 0, newName, 0, length);
+                        name = newName;
+                    }
+                    name[length++] = cur;
+                }
+                String symbol = new String(name, 0, length, ArHeaders.ASCII);
+                symbols[i] = symbol;
+                if (!result.containsKey(symbol)) {
+                    result.put(symbol, Long.valueOf(memberOffsets[i]));
+                }
+            }
+            return new ArSymbolTable(result, symbols, memberOffsets, offsetSize);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("corrupted symbol table. unexpected end of data");
+        }
+    }
+
+    private static long readOffset(ByteBuffer data, int offsetSize) {
+        if (offsetSize == 4) {
+            return data.getInt() & 0xFFFFFFFFL;
+        }
+        return data.getLong();
+    }
+
+    /**
+     * Encodes symbol table data in the same format as this table.
+     * @param symbols - symbols in table order
+     * @param headerOffsets - header offset of the entry for every symbol
+     */
+    byte[] encode(List<String> symbols, List<Long> headerOffsets) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ByteBuffer offsetsData = ByteBuffer.allocate((symbols.size() + 1) * offsetSize);
+        writeOffset(offsetsData, symbols.size());
+        for (Long cur : headerOffsets) {
+            writeOffset(offsetsData, cur.longValue());
+        }
+        baos.write(offsetsData.array(), 0, offsetsData.capacity());
+        for (String cur : symbols) {
+            byte[] name = cur.getBytes(ArHeaders.ASCII);
+            baos.write(name, 0, name.length);
+            baos.write(0);
+        }
+        if (baos.size() % 2 != 0) {
+            // GNU ar keeps symbol table size even
+            baos.write(0);
+        }
+        return baos.toByteArray();
+    }
+
+    private void writeOffset(ByteBuffer data, long value) {
+        if (offsetSize == 4) {
+            data.putInt((int) value);
+        } else {
+            data.putLong(value);
+        }
+    }
+
+    /**
+     * @return all symbols in table order. Symbol could be specified several times
+     */
+    String[] getOrderedSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @return header offsets in table order
+     */
+    long[] getOrderedHeaderOffsets() {
+        return memberOffsets;
+    }
+
+    static boolean isSymbolTable(ArEntry entry) {
+        return entry.getFilename().equals(SYMBOL_TABLE) || entry.getFilename().equals(SYMBOL_TABLE_64);
+    }
+
+    /**
+     * @param symbol - symbol name
+     * @return header offset of the entry which defines symbol or -1 if symbol not found
+     */
+    public long getHeaderOffset(String symbol) {
+        Long result = offsets.get(symbol);
+        if (result == null) {
+            return -1;
+        }
+        return result.longValue();
+    }
+
+    /**
+     * @return all symbols
+     */
+    public Set<String> getSymbols() {
+        return Collections.unmodifiableSet(offsets.keySet());
+    }
+
+    /**
+     * @return number of symbols
+     */
+    public int size() {
+        return offsets.size();
+    }
+
+}
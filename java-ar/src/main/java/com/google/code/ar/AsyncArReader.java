@@ -0,0 +1,336 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking AR archive reader. Archive is read using AsynchronousFileChannel and published as a sequence of 
+ * <code>com.google.code.ar.ArChunk</code>. Data is read only when subscriber requests it, so slow subscriber doesn't 
+ * cause unbounded buffering. Every subscriber reads archive from the beginning using its own channel. Normal scenario:
+ * 
+ * <blockquote><pre>
+ * AsyncArReader reader = new AsyncArReader(Paths.get("package.deb"));
+ * reader.subscribe(new Flow.Subscriber&lt;ArChunk&gt;() {
+ *      public void onSubscribe(Flow.Subscription subscription) {
+ *          subscription.request(1);
+ *      }
+ *      public void onNext(ArChunk chunk) {
+ *          //process chunk. request more
+ *      }
+ *      ...
+ * });
+ * </pre></blockquote>
+ * 
+ * Supports only GNU compatible AR data.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class AsyncArReader implements Flow.Publisher<ArChunk> {
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final ExecutorService executor;
+    private final int chunkSize;
+
+    /**
+     * Uses default thread pool of AsynchronousFileChannel and 64Kb chunks
+     * @param path - AR archive
+     */
+    public AsyncArReader(Path path) {
+        this(path, null, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param path - AR archive
+     * @param executor - thread pool for I/O completion and subscriber callbacks. If null, default thread pool is used
+     * @param chunkSize - maximum size of the chunk data
+     * @throws IllegalArgumentException if path is null or chunk size is not positive
+     */
+    public AsyncArReader(Path path, ExecutorService executor, int chunkSize) {
+        if (path == null) {
+            throw new IllegalArgumentException("path cannot be null");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size should be positive. got: " + chunkSize);
+        }
+        this.path = path;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ArChunk> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber cannot be null");
+        }
+        AsynchronousFileChannel channel;
+        long fileSize;
+        try {
+            channel = AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ), executor);
+            try {
+                fileSize = channel.size();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                @Override
+                public void request(long n) {
+                    // do nothing
+                }
+
+                @Override
+                public void cancel() {
+                    // do nothing
+                }
+            });
+            subscriber.onError(e);
+            return;
+        }
+        ArSubscription subscription = new ArSubscription(subscriber, channel, fileSize);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private enum State {
+        SIGNATURE, HEADER, LONG_FILE_NAMES, DATA
+    }
+
+    private final class ArSubscription implements Flow.Subscription, CompletionHandler<Integer, ByteBuffer> {
+
+        private final Flow.Subscriber<? super ArChunk> subscriber;
+        private final AsynchronousFileChannel channel;
+        private final long fileSize;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicBoolean inFlight = new AtomicBoolean();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        // accessed only by the thread which owns inFlight
+        private final ByteBuffer header = ByteBuffer.allocate(ArHeaders.HEADER_LENGTH);
+        private State state = State.SIGNATURE;
+        private long position = 0;
+        private LongFileNames longFileNames;
+        private ArEntry curEntry;
+        private long curEntryOffset;
+
+        ArSubscription(Flow.Subscriber<? super ArChunk> subscriber, AsynchronousFileChannel channel, long fileSize) {
+            this.subscriber = subscriber;
+            this.channel = channel;
+            this.fileSize = fileSize;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("requested number of chunks should be positive. got: " + n));
+                return;
+            }
+            long cur;
+            long next;
+            do {
+                cur = demand.get();
+                next = cur + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!demand.compareAndSet(cur, next));
+            if (inFlight.compareAndSet(false, true)) {
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            terminate();
+        }
+
+        /**
+         * Should be called by the owner of inFlight
+         */
+        private void drain() {
+            while (!done.get()) {
+                if (demand.get() == 0) {
+                    inFlight.set(false);
+                    // request() might have been called concurrently
+                    if (demand.get() == 0 || !inFlight.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    if (step()) {
+                        return;
+                    }
+                } catch (Exception e) {
+                    fail(e);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return true if asynchronous read was started
+         */
+        private boolean step() throws IOException {
+            switch (state) {
+            case SIGNATURE:
+                read(ByteBuffer.allocate(ArHeaders.SIGNATURE_LENGTH), 0);
+                return true;
+            case HEADER:
+                if (position >= fileSize) {
+                    if (done.compareAndSet(false, true)) {
+                        close();
+                        subscriber.onComplete();
+                    }
+                    return false;
+                }
+                header.clear();
+                read(header, position);
+                return true;
+            case LONG_FILE_NAMES:
+                if (curEntry.getSize() > Integer.MAX_VALUE) {
+                    throw new IOException("corrupted archive data. invalid long file names size: " + curEntry.getSize());
+                }
+                read(ByteBuffer.allocate((int) curEntry.getSize()), position);
+                return true;
+            case DATA:
+                long remaining = curEntry.getSize() - curEntryOffset;
+                if (remaining == 0) {
+                    // entry without data
+                    emit(ByteBuffer.allocate(0));
+                    return false;
+                }
+                read(ByteBuffer.allocate((int) Math.min(chunkSize, remaining)), position);
+                return true;
+            default:
+                throw new IllegalStateException("unknown state: " + state);
+            }
+        }
+
+        private void read(ByteBuffer dst, long readPosition) {
+            channel.read(dst, readPosition, dst, this);
+        }
+
+        @Override
+        public void completed(Integer result, ByteBuffer dst) {
+            if (done.get()) {
+                return;
+            }
+            try {
+                if (result.intValue() == -1) {
+                    throw new IOException("unexpected end of file. Expected: " + dst.capacity() + ". Read: " + dst.position());
+                }
+                if (dst.hasRemaining()) {
+                    read(dst, position + dst.position());
+                    return;
+                }
+                dst.flip();
+                process(dst);
+            } catch (Exception e) {
+                fail(e);
+                return;
+            }
+            drain();
+        }
+
+        private void process(ByteBuffer dst) throws IOException {
+            switch (state) {
+            case SIGNATURE:
+                ArHeaders.checkSignature(dst.array());
+                position = ArHeaders.SIGNATURE_LENGTH;
+                state = State.HEADER;
+                break;
+            case HEADER:
+                curEntry = ArHeaders.parse(dst.array(), longFileNames);
+                curEntry.setHeaderOffset(position);
+                curEntry.setDataOffset(position + ArHeaders.HEADER_LENGTH);
+                curEntryOffset = 0;
+                position = curEntry.getDataOffset();
+                if (ArHeaders.isLongFileNames(curEntry)) {
+                    state = State.LONG_FILE_NAMES;
+                } else {
+                    state = State.DATA;
+                }
+                break;
+            case LONG_FILE_NAMES:
+                longFileNames = new LongFileNames(dst.array());
+                position = ArHeaders.getNextHeaderOffset(curEntry.getDataOffset(), curEntry.getSize());
+                state = State.HEADER;
+                break;
+            case DATA:
+                emit(dst);
+                break;
+            default:
+                throw new IllegalStateException("unknown state: " + state);
+            }
+        }
+
+        private void emit(ByteBuffer data) {
+            long offset = curEntryOffset;
+            curEntryOffset += data.remaining();
+            position += data.remaining();
+            boolean last = curEntryOffset == curEntry.getSize();
+            if (last) {
+                position = ArHeaders.getNextHeaderOffset(curEntry.getDataOffset(), curEntry.getSize());
+                state = State.HEADER;
+            }
+            demand.decrementAndGet();
+            subscriber.onNext(new ArChunk(curEntry, offset, data, last));
+        }
+
+        @Override
+        public void failed(Throwable exc, ByteBuffer dst) {
+            fail(exc);
+        }
+
+        private void fail(Throwable e) {
+            if (done.compareAndSet(false, true)) {
+                close();
+                subscriber.onError(e);
+            }
+        }
+
+        private void terminate() {
+            if (done.compareAndSet(false, true)) {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+}
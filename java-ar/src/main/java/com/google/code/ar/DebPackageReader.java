@@ -0,0 +1,248 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads metadata of the Debian packages. Package is read sequentially until the control member, so the data member 
+ * is never read. Normal scenario:
+ * 
+ * <blockquote><pre>
+ * DebPackageReader reader = new DebPackageReader(Paths.get("nginx.deb"));
+ * try {
+ *      byte[] control = reader.getControlFile("control");
+ *      //parse control file
+ * } finally {
+ *      reader.close();
+ * }
+ * </pre></blockquote>
+ * 
+ * Supports uncompressed and gzip compressed control members.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class DebPackageReader implements Closeable {
+
+    private static final String DEBIAN_BINARY = "debian-binary";
+    private static final String CONTROL = "control.tar";
+    private static final int TAR_BLOCK_SIZE = 512;
+
+    private final ArInputStream aris;
+    private final String formatVersion;
+    private final ArEntry control;
+    private boolean isControlRead = false;
+
+    /**
+     * @param path - Debian package
+     * @throws IOException if unable to read file or file is not a Debian package
+     */
+    public DebPackageReader(Path path) throws IOException {
+        this(Files.newInputStream(path));
+    }
+
+    /**
+     * Reads package members until the control member.
+     * @param in - Debian package. Closed on close()
+     * @throws IOException if unable to read stream or stream is not a Debian package
+     * @throws IllegalArgumentException if provided stream is null
+     */
+    public DebPackageReader(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("input stream cannot be null");
+        }
+        try {
+            aris = new ArInputStream(in, true);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        try {
+            ArEntry first = aris.getNextEntry();
+            if (first == null || !first.getFilename().equals(DEBIAN_BINARY)) {
+                throw new IOException("not a debian package. first member should be: " + DEBIAN_BINARY);
+            }
+            if (first.getSize() > TAR_BLOCK_SIZE) {
+                throw new IOException("invalid " + DEBIAN_BINARY + " size: " + first.getSize());
+            }
+            byte[] version = new byte[(int) first.getSize()];
+            if (ArStreams.readFully(aris, version, 0, version.length) != version.length) {
+                throw new IOException("unexpected end of " + DEBIAN_BINARY);
+            }
+            formatVersion = new String(version, ArHeaders.ASCII).trim();
+            if (!formatVersion.startsWith("2.")) {
+                throw new IOException("unsupported debian package format: " + formatVersion);
+            }
+            ArEntry cur;
+            // members starting with "_" are reserved and could be skipped
+            while ((cur = aris.getNextEntry()) != null && cur.getFilename().startsWith("_")) {
+                continue;
+            }
+            if (cur == null || !cur.getFilename().startsWith(CONTROL)) {
+                throw new IOException("not a debian package. expected " + CONTROL + " member. got: " + (cur == null ? null : cur.getFilename()));
+            }
+            control = cur;
+        } catch (IOException e) {
+            aris.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return content of the debian-binary member. i.e. "2.0"
+     */
+    public String getFormatVersion() {
+        return formatVersion;
+    }
+
+    /**
+     * @return control member entry. i.e. "control.tar.gz"
+     */
+    public ArEntry getControlEntry() {
+        return control;
+    }
+
+    /**
+     * Decompresses control member while it is read. Could be called once.
+     * @return uncompressed tar archive of the control member. Closing this stream doesn't close the package
+     * @throws IOException if control member has been already read or compression is not supported
+     */
+    public InputStream getControl() throws IOException {
+        if (isControlRead) {
+            throw new IOException("control member has been already read");
+        }
+        isControlRead = true;
+        InputStream member = new FilterInputStream(aris) {
+
+            @Override
+            public void close() throws IOException {
+                //do not close package
+            }
+        };
+        String compression = control.getFilename().substring(CONTROL.length());
+        if (compression.length() == 0) {
+            return member;
+        }
+        if (compression.equals(".gz")) {
+            return new GZIPInputStream(member);
+        }
+        throw new IOException("unsupported compression of the control member: " + control.getFilename());
+    }
+
+    /**
+     * Finds file in the control member. Could be called once.
+     * @param name - file name. i.e. "control", "md5sums" or "./control"
+     * @return file content or null if not found
+     * @throws IOException if control member has been already read or compression is not supported or control member is corrupted
+     */
+    public byte[] getControlFile(String name) throws IOException {
+        String expected = normalize(name);
+        InputStream tar = getControl();
+        try {
+            byte[] header = new byte[TAR_BLOCK_SIZE];
+            while (ArStreams.readFully(tar, header, 0, header.length) == header.length) {
+                if (isZero(header)) {
+                    return null;
+                }
+                long size = parseOctal(header, 124, 12);
+                String curName = parseString(header, 0, 100);
+                if (parseString(header, 257, 5).equals("ustar")) {
+                    String prefix = parseString(header, 345, 155);
+                    if (prefix.length() != 0) {
+                        curName = prefix + "/" + curName;
+                    }
+                }
+                byte type = header[156];
+                if ((type == '0' || type == 0) && normalize(curName).equals(expected)) {
+                    if (size > Integer.MAX_VALUE) {
+                        throw new IOException("control file is too big: " + size);
+                    }
+                    byte[] result = new byte[(int) size];
+                    if (ArStreams.readFully(tar, result, 0, result.length) != result.length) {
+                        throw new IOException("unexpected end of control member");
+                    }
+                    return result;
+                }
+                long toSkip = (size + TAR_BLOCK_SIZE - 1) / TAR_BLOCK_SIZE * TAR_BLOCK_SIZE;
+                if (ArStreams.skip(tar, toSkip) != toSkip) {
+                    throw new IOException("unexpected end of control member");
+                }
+            }
+            return null;
+        } finally {
+            tar.close();
+        }
+    }
+
+    /**
+     * Closes underlying stream. Data member is not read
+     */
+    @Override
+    public void close() throws IOException {
+        aris.close();
+    }
+
+    private static String normalize(String name) {
+        if (name.startsWith("./")) {
+            return name.substring(2);
+        }
+        return name;
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (int i = 0; i < block.length; i++) {
+            if (block[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String parseString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, ArHeaders.ASCII);
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length) throws IOException {
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte cur = header[i];
+            if (cur == 0 || cur == ' ') {
+                if (result != 0) {
+                    break;
+                }
+                continue;
+            }
+            if (cur < '0' || cur > '7') {
+                throw new IOException("corrupted control member. invalid size");
+            }
+            result = result * 8 + (cur - '0');
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits JDK Flight Recorder events: "com.google.code.ar.EntryRead", "com.google.code.ar.EntryWrite" and "com.google.code.ar.Sync".
+ * Event duration is the time between entryStarted and entryFinished. Events are committed only if they are enabled in 
+ * the active recording. Thread safe, so the same instance could be shared between several input and output streams.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public class JfrArListener implements ArListener {
+
+    // entries of the abandoned streams are garbage collected
+    private final Map<ArEntry, EntryEvent> entries = Collections.synchronizedMap(new WeakHashMap<ArEntry, EntryEvent>());
+    private final ThreadLocal<SyncEvent> curSync = new ThreadLocal<SyncEvent>();
+
+    @Override
+    public void entryStarted(ArEntry entry, boolean write) {
+        EntryEvent event;
+        if (write) {
+            event = new EntryWriteEvent();
+        } else {
+            event = new EntryReadEvent();
+        }
+        event.begin();
+        entries.put(entry, event);
+    }
+
+    @Override
+    public void entryFinished(ArEntry entry, long dataBytes, long skippedBytes, long ioNanos) {
+        EntryEvent event = entries.remove(entry);
+        if (event == null || !event.shouldCommit()) {
+            return;
+        }
+        event.end();
+        event.filename = entry.getFilename();
+        event.size = entry.getSize();
+        event.dataBytes = dataBytes;
+        event.skippedBytes = skippedBytes;
+        event.ioTime = ioNanos;
+        event.commit();
+    }
+
+    @Override
+    public void syncStarted() {
+        SyncEvent event = new SyncEvent();
+        event.begin();
+        curSync.set(event);
+    }
+
+    @Override
+    public void syncFinished(long nanos) {
+        SyncEvent event = curSync.get();
+        curSync.remove();
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    @Category({ "AR" })
+    @StackTrace(false)
+    abstract static class EntryEvent extends Event {
+
+        @Label("Filename")
+        String filename;
+
+        @Label("Size")
+        @Description("Entry size declared in the header")
+        @DataAmount
+        long size;
+
+        @Label("Data Bytes")
+        @DataAmount
+        long dataBytes;
+
+        @Label("Skipped Bytes")
+        @DataAmount
+        long skippedBytes;
+
+        @Label("I/O Time")
+        @Description("Time blocked in the underlying stream or file")
+        @Timespan
+        long ioTime;
+    }
+
+    @Name("com.google.code.ar.EntryRead")
+    @Label("AR Entry Read")
+    static class EntryReadEvent extends EntryEvent {
+    }
+
+    @Name("com.google.code.ar.EntryWrite")
+    @Label("AR Entry Write")
+    static class EntryWriteEvent extends EntryEvent {
+    }
+
+    @Name("com.google.code.ar.Sync")
+    @Label("AR Sync")
+    @Category({ "AR" })
+    @StackTrace(false)
+    static class SyncEvent extends Event {
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GNU long file names table. Stored in "//" entry. Table is indexed once, so resolving doesn't scan table data.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class LongFileNames {
+
+    private final byte[] data;
+    private final int[] starts;
+    private final int[] ends;
+    private final String[] names;
+    private Map<String, Integer> offsets;
+
+    LongFileNames(byte[] data) {
+        this.data = data;
+        int count = index(null, null);
+        starts = new int[count];
+        ends = new int[count];
+        index(starts, ends);
+        // names are decoded on the first access
+        names = new String[count];
+    }
+
+    private int index(int[] starts, int[] ends) {
+        int result = 0;
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == '/' && (i == data.length - 1 || data[i + 1] == '\n')) {
+                if (i != start) {
+                    if (starts != null) {
+                        starts[result] = start;
+                        ends[result] = i;
+                    }
+                    result++;
+                }
+                start = i + 2;
+            }
+        }
+        return result;
+    }
+
+    private String getName(int index) {
+        String result = names[index];
+        if (result == null) {
+            result = new String(data, starts[index], ends[index] - starts[index], ArHeaders.ASCII).trim();
+            names[index] = result;
+        }
+        return result;
+    }
+
+    /**
+     * @param offset - offset in the long names table
+     * @param result - name which contains offset. Leading and trailing whitespaces are trimmed
+     * @throws IOException if offset is invalid
+     */
+    void resolve(int offset, ArHeaders.Filename result) throws IOException {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] > offset) {
+                high = mid - 1;
+            } else if (ends[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                // offset might point into the middle of the name
+                int start = offset;
+                int end = ends[mid];
+                while (start < end && (data[start] & 0xFF) <= ' ') {
+                    start++;
+                }
+                while (end > start && (data[end - 1] & 0xFF) <= ' ') {
+                    end--;
+                }
+                result.set(data, start, end);
+                return;
+            }
+        }
+        throw new IOException("corrupted archive data. invalid long file name offset: " + offset);
+    }
+
+    /**
+     * @param name - file name
+     * @return offset of the name in the long names table or -1 if table doesn't contain it
+     */
+    int getOffset(String name) {
+        if (offsets == null) {
+            offsets = new HashMap<String, Integer>();
+            for (int i = 0; i < names.length; i++) {
+                if (!offsets.containsKey(getName(i))) {
+                    offsets.put(getName(i), Integer.valueOf(starts[i]));
+                }
+            }
+        }
+        Integer result = offsets.get(name);
+        if (result == null) {
+            return -1;
+        }
+        return result.intValue();
+    }
+
+}
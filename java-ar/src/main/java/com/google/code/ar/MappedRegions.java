@@ -0,0 +1,105 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only memory mapping of AR archive. Single mapping cannot be bigger than 2Gb, so archive is split into several regions. 
+ * Region boundaries are aligned to entries, so every entry data fits into one region.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class MappedRegions {
+
+    private final long[] starts;
+    private final long[] ends;
+    private final MappedByteBuffer[] buffers;
+
+    MappedRegions(FileChannel channel, List<ArEntry> entries, long maxRegionSize) throws IOException {
+        List<long[]> regions = new ArrayList<long[]>();
+        long curStart = -1;
+        long curEnd = -1;
+        for (ArEntry cur : entries) {
+            long dataEnd = cur.getDataOffset() + cur.getSize();
+            if (cur.getSize() > maxRegionSize) {
+                continue;
+            }
+            if (curStart == -1 || dataEnd - curStart > maxRegionSize) {
+                if (curStart != -1) {
+                    regions.add(new long[] { curStart, curEnd });
+                }
+                curStart = cur.getDataOffset();
+            }
+            curEnd = dataEnd;
+        }
+        if (curStart != -1) {
+            regions.add(new long[] { curStart, curEnd });
+        }
+        starts = new long[regions.size()];
+        ends = new long[regions.size()];
+        buffers = new MappedByteBuffer[regions.size()];
+        for (int i = 0; i < regions.size(); i++) {
+            starts[i] = regions.get(i)[0];
+            ends[i] = regions.get(i)[1];
+            buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, starts[i], ends[i] - starts[i]);
+        }
+    }
+
+    /**
+     * @return read-only slice of the mapping
+     * @throws IOException if requested data is not mapped
+     */
+    ByteBuffer slice(long offset, long size) throws IOException {
+        int index = findRegion(offset);
+        if (index < 0 || offset + size > ends[index]) {
+            throw new IOException("data is not mapped. offset: " + offset + " size: " + size);
+        }
+        ByteBuffer result = buffers[index].duplicate();
+        int start = (int) (offset - starts[index]);
+        result.limit(start + (int) size);
+        result.position(start);
+        return result.slice();
+    }
+
+    private int findRegion(long offset) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] > offset) {
+                high = mid - 1;
+            } else if (ends[mid] < offset) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return buffers.length;
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Defines when data written by <code>com.google.code.ar.ArFileOutputStream</code> is forced to the storage device.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+public enum SyncMode {
+
+    /**
+     * Never force data. Operating system decides when data is written to the storage device. Fastest option for temporary archives.
+     */
+    NONE,
+
+    /**
+     * Force data and file metadata once on close.
+     */
+    ON_CLOSE,
+
+    /**
+     * Force data after every entry and force data and file metadata on close.
+     */
+    PER_ENTRY
+
+}
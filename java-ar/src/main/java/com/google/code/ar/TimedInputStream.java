@@ -0,0 +1,80 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Measures time blocked in the underlying stream. Used only if ArListener is set.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class TimedInputStream extends FilterInputStream {
+
+    private long nanos;
+
+    TimedInputStream(InputStream in) {
+        super(in);
+    }
+
+    InputStream getUnderlying() {
+        return in;
+    }
+
+    /**
+     * @return time since the previous call
+     */
+    long getAndResetNanos() {
+        long result = nanos;
+        nanos = 0;
+        return result;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return in.read();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return in.read(b, off, len);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return in.skip(n);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+}
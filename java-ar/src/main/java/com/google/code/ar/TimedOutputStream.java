@@ -0,0 +1,80 @@
+package com.google.code.ar;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Measures time blocked in the underlying stream. Used only if ArListener is set.
+ * 
+ * @author dernasherbrezon
+ *
+ */
+class TimedOutputStream extends FilterOutputStream {
+
+    private long nanos;
+
+    TimedOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    OutputStream getUnderlying() {
+        return out;
+    }
+
+    /**
+     * @return time since the previous call
+     */
+    long getAndResetNanos() {
+        long result = nanos;
+        nanos = 0;
+        return result;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.write(b);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.write(b, off, len);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.flush();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.google.code.ar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ArCursorTest extends TestCase {
+
+    public void testSameAsArInputStream() throws Exception {
+        String[] resources = new String[] { "nginx_0.7.67-3ubuntu1_i386.deb", "result.a", "libsymbols.a" };
+        for (String resource : resources) {
+            ArInputStream aris = new ArInputStream(getResource(resource));
+            ArCursor cursor = new ArCursor(getResource(resource));
+            ArEntry expected;
+            while ((expected = aris.getNextEntry()) != null) {
+                assertTrue(cursor.next());
+                assertEquals(expected.getFilename(), cursor.getFilename());
+                assertTrue(cursor.filenameEquals(expected.getFilename()));
+                assertEquals(expected.getSize(), cursor.getSize());
+                assertEquals(expected.getFileModificationTimestamp(), cursor.getFileModificationTimestamp());
+                assertEquals(expected.getOwnerId(), cursor.getOwnerId());
+                assertEquals(expected.getGroupId(), cursor.getGroupId());
+                assertEquals(expected.getFileMode(), cursor.getFileMode());
+                assertEquals(expected.getHeaderOffset(), cursor.getHeaderOffset());
+                assertEquals(expected.getDataOffset(), cursor.getDataOffset());
+                byte[] name = new byte[cursor.getFilenameLength()];
+                assertEquals(name.length, cursor.getFilename(name, 0));
+                assertEquals(expected.getFilename(), new String(name, "ASCII"));
+                if (expected.getSize() % 3 == 0) {
+                    // read some entries only
+                    byte[] data = new byte[(int) cursor.getSize()];
+                    int total = 0;
+                    int read;
+                    while ((read = cursor.read(data, total, data.length - total)) > 0) {
+                        total += read;
+                    }
+                    assertTrue(Arrays.equals(expected.getData(), data));
+                }
+                ArEntry entry = cursor.toEntry();
+                assertEquals(expected.getFilename(), entry.getFilename());
+                assertEquals(expected.getSize(), entry.getSize());
+            }
+            assertFalse(cursor.next());
+            assertEquals(-1, cursor.getHeaderOffset());
+            aris.close();
+            cursor.close();
+        }
+    }
+
+    public void testNoAllocationsPerEntry() throws Exception {
+        ArEntry[] entries = new ArEntry[10000];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new ArEntry();
+            entries[i].setFilename("file_with_long_name_" + i);
+            entries[i].setData(new byte[i % 7]);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArOutputStream aros = new ArOutputStream(baos);
+        aros.setEntries(entries);
+        aros.close();
+        byte[] archive = baos.toByteArray();
+
+        // warm up
+        scan(archive);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        int count = scan(archive);
+        long allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        assertEquals(entries.length, count);
+        // long file names table and cursor only
+        assertTrue("allocated: " + allocated, allocated < archive.length / 2);
+    }
+
+    public void testMissingPadding() throws Exception {
+        ArEntry entry = new ArEntry();
+        entry.setFilename("odd");
+        entry.setData("abc".getBytes("ASCII"));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArOutputStream aros = new ArOutputStream(baos);
+        aros.setEntries(new ArEntry[] { entry });
+        aros.close();
+        byte[] archive = Arrays.copyOf(baos.toByteArray(), baos.size() - 1);
+
+        ArCursor cursor = new ArCursor(new ByteArrayInputStream(archive));
+        assertTrue(cursor.next());
+        assertEquals("odd", cursor.getFilename());
+        assertFalse(cursor.next());
+        cursor.close();
+    }
+
+    public void testPaddedLongFileNames() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write("!<arch>\n".getBytes("ASCII"));
+        baos.write("//                                              17        `\n".getBytes("ASCII"));
+        baos.write("  spaced_name  /\n\n".getBytes("ASCII"));
+        baos.write("/0              0           0     0     644     0         `\n".getBytes("ASCII"));
+        byte[] archive = baos.toByteArray();
+
+        ArInputStream aris = new ArInputStream(new ByteArrayInputStream(archive));
+        assertEquals("spaced_name", aris.getNextEntry().getFilename());
+        aris.close();
+        ArCursor cursor = new ArCursor(new ByteArrayInputStream(archive));
+        assertTrue(cursor.next());
+        assertEquals("spaced_name", cursor.getFilename());
+        assertTrue(cursor.filenameEquals("spaced_name"));
+        cursor.close();
+    }
+
+    public void testInvalidArchive() throws Exception {
+        try {
+            new ArCursor(new ByteArrayInputStream("!<arch".getBytes("ASCII")));
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        ArCursor cursor = new ArCursor(new ByteArrayInputStream("!<arch>\nshort".getBytes("ASCII")));
+        try {
+            cursor.next();
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        cursor.close();
+    }
+
+    private static int scan(byte[] archive) throws IOException {
+        ArCursor cursor = new ArCursor(new ByteArrayInputStream(archive));
+        int result = 0;
+        while (cursor.next()) {
+            if (cursor.getSize() >= 0 && !cursor.filenameEquals("unknown")) {
+                result++;
+            }
+        }
+        cursor.close();
+        return result;
+    }
+
+    private static InputStream getResource(String name) {
+        return ArCursorTest.class.getClassLoader().getResourceAsStream(name);
+    }
+}
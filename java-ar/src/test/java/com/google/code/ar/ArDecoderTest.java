@@ -0,0 +1,117 @@
+package com.google.code.ar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ArDecoderTest extends TestCase {
+
+    public void testSplitBuffers() throws Exception {
+        assertDecoded("nginx_0.7.67-3ubuntu1_i386.deb", 1);
+        assertDecoded("nginx_0.7.67-3ubuntu1_i386.deb", 59);
+        assertDecoded("nginx_0.7.67-3ubuntu1_i386.deb", 4096);
+        assertDecoded("result.a", 1);
+        assertDecoded("result.a", 7);
+        assertDecoded("libsymbols.a", 61);
+        assertDecoded("libsymbols.a", 100000);
+    }
+
+    public void testTruncated() throws Exception {
+        byte[] archive = Files.readAllBytes(ArFileTest.getResource("result.a").toPath());
+        CollectingListener listener = new CollectingListener();
+        ArDecoder decoder = new ArDecoder(listener);
+        decoder.decode(ByteBuffer.wrap(archive, 0, archive.length - 10));
+        try {
+            decoder.finish();
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        assertEquals(3, listener.entries.size());
+        assertEquals(2, listener.ended);
+    }
+
+    public void testMissingPadding() throws Exception {
+        ArEntry entry = ArFileTest.createEntry("odd", "abc");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArOutputStream aros = new ArOutputStream(baos);
+        aros.setEntries(new ArEntry[] { entry });
+        aros.close();
+        CollectingListener listener = new CollectingListener();
+        ArDecoder decoder = new ArDecoder(listener);
+        decoder.decode(ByteBuffer.wrap(baos.toByteArray(), 0, baos.size() - 1));
+        decoder.finish();
+        assertEquals(1, listener.entries.size());
+        assertEquals(1, listener.ended);
+    }
+
+    public void testInvalidSignature() throws Exception {
+        ArDecoder decoder = new ArDecoder(new CollectingListener());
+        try {
+            decoder.decode(ByteBuffer.wrap("!<arch>X".getBytes("ASCII")));
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    private static void assertDecoded(String resource, int bufferSize) throws Exception {
+        byte[] archive = Files.readAllBytes(ArFileTest.getResource(resource).toPath());
+        CollectingListener listener = new CollectingListener();
+        ArDecoder decoder = new ArDecoder(listener);
+        for (int i = 0; i < archive.length; i += bufferSize) {
+            ByteBuffer buffer = ByteBuffer.wrap(archive, i, Math.min(bufferSize, archive.length - i));
+            decoder.decode(buffer);
+            assertFalse(buffer.hasRemaining());
+        }
+        decoder.finish();
+
+        ArFile file = new ArFile(ArFileTest.getResource(resource));
+        assertEquals(file.size(), listener.entries.size());
+        assertEquals(file.size(), listener.ended);
+        for (int i = 0; i < file.size(); i++) {
+            ArEntry expected = file.getEntries().get(i);
+            ArEntry actual = listener.entries.get(i);
+            assertEquals(expected.getFilename(), actual.getFilename());
+            assertEquals(expected.getHeaderOffset(), actual.getHeaderOffset());
+            assertEquals(expected.getDataOffset(), actual.getDataOffset());
+            assertTrue(Arrays.equals(ArFileTest.readFully(file.getInputStream(expected)), listener.data.get(i).toByteArray()));
+        }
+        file.close();
+    }
+
+    private static class CollectingListener implements ArDecoderListener {
+
+        private final List<ArEntry> entries = new ArrayList<ArEntry>();
+        private final List<ByteArrayOutputStream> data = new ArrayList<ByteArrayOutputStream>();
+        private int ended = 0;
+
+        @Override
+        public void onEntry(ArEntry entry) throws IOException {
+            assertEquals(entries.size(), ended);
+            entries.add(entry);
+            data.add(new ByteArrayOutputStream());
+        }
+
+        @Override
+        public void onData(ArEntry entry, ByteBuffer buffer) throws IOException {
+            assertTrue(buffer.isReadOnly());
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            data.get(data.size() - 1).write(chunk);
+        }
+
+        @Override
+        public void onEntryEnd(ArEntry entry) throws IOException {
+            assertEquals(entry.getSize(), data.get(data.size() - 1).size());
+            ended++;
+        }
+    }
+
+}
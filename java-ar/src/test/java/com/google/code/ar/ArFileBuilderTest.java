@@ -0,0 +1,118 @@
+package com.google.code.ar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ArFileBuilderTest extends TestCase {
+
+    private Path tempDir;
+
+    public void testSuccess() throws Exception {
+        tempDir = Files.createTempDirectory("arbuilder");
+        ArFileBuilder builder = new ArFileBuilder();
+        builder.setParallelism(4);
+        for (int i = 0; i < 100; i++) {
+            Path source = tempDir.resolve("object_with_long_name_" + i + ".o");
+            Files.write(source, createData(i));
+            builder.add(ArFileTest.createEntry(source.getFileName().toString(), null), source);
+        }
+        builder.add(ArFileTest.createEntry("memory", "odd"));
+        assertEquals(101, builder.size());
+        Path archive = tempDir.resolve("result.a");
+        builder.build(archive);
+
+        ArFile file = new ArFile(archive);
+        assertEquals(101, file.size());
+        for (int i = 0; i < 100; i++) {
+            ArEntry cur = file.getEntries().get(i);
+            assertEquals("object_with_long_name_" + i + ".o", cur.getFilename());
+            assertEquals(100644, cur.getFileMode());
+            assertTrue(Arrays.equals(createData(i), ArFileTest.readFully(file.getInputStream(cur))));
+        }
+        assertEquals("odd", new String(ArFileTest.readFully(file.getInputStream(file.getEntry("memory"))), "ASCII"));
+        file.close();
+
+        ArInputStream aris = new ArInputStream(Files.newInputStream(archive));
+        int count = 0;
+        while (aris.getNextEntry() != null) {
+            count++;
+        }
+        aris.close();
+        assertEquals(101, count);
+    }
+
+    public void testSameAsArOutputStream() throws Exception {
+        tempDir = Files.createTempDirectory("arbuilder");
+        ArEntry[] entries = new ArEntry[] { ArFileTest.createEntry("short", "1"), ArFileTest.createEntry("filewithlonglongname", "some data\n\n") };
+        ArFileBuilder builder = new ArFileBuilder();
+        for (ArEntry cur : entries) {
+            builder.add(cur);
+        }
+        Path archive = tempDir.resolve("result.a");
+        builder.build(archive);
+        ArOutputStream aros = new ArOutputStream(Files.newOutputStream(tempDir.resolve("expected.a")));
+        aros.setEntries(entries);
+        aros.close();
+        assertEquals(Files.size(tempDir.resolve("expected.a")), Files.size(archive));
+        ArFile file = new ArFile(archive);
+        assertEquals(2, file.size());
+        file.close();
+    }
+
+    public void testEmpty() throws Exception {
+        tempDir = Files.createTempDirectory("arbuilder");
+        Path archive = tempDir.resolve("result.a");
+        new ArFileBuilder().build(archive);
+        assertEquals(8, Files.size(archive));
+        ArFile file = new ArFile(archive);
+        assertEquals(0, file.size());
+        file.close();
+    }
+
+    public void testMissingSource() throws Exception {
+        tempDir = Files.createTempDirectory("arbuilder");
+        ArFileBuilder builder = new ArFileBuilder();
+        builder.add(ArFileTest.createEntry("missing", null), tempDir.resolve("missing"));
+        Path archive = tempDir.resolve("result.a");
+        try {
+            builder.build(archive);
+            fail("exception expected");
+        } catch (IOException e) {
+            // expected
+        }
+        assertFalse(Files.exists(archive));
+    }
+
+    public void testInvalidArguments() throws Exception {
+        ArFileBuilder builder = new ArFileBuilder();
+        try {
+            builder.setParallelism(0);
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            builder.add(ArFileTest.createEntry("memory", null));
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static byte[] createData(int index) {
+        byte[] result = new byte[index * 37 + 1];
+        Arrays.fill(result, (byte) index);
+        return result;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (tempDir != null) {
+            ArFileTest.delete(tempDir.toFile());
+        }
+    }
+}
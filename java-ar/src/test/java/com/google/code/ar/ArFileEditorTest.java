@@ -0,0 +1,198 @@
+package com.google.code.ar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ArFileEditorTest extends TestCase {
+
+    private Path tempDir;
+
+    public void testRemoveAndReplace() throws Exception {
+        Path archive = copy("libsymbols.a");
+        ArFile original = new ArFile(archive);
+        byte[] first = ArFileTest.readFully(original.getInputStream(original.getEntry("first_object_with_long_name.o")));
+        original.close();
+
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.remove("second.o");
+        editor.replace(ArFileTest.createEntry("third.o", "new data"));
+        editor.commit();
+
+        ArFile file = new ArFile(archive);
+        assertEquals(3, file.size());
+        assertNull(file.getEntry("second.o"));
+        assertTrue(Arrays.equals(first, ArFileTest.readFully(file.getInputStream(file.getEntry("first_object_with_long_name.o")))));
+        assertEquals("new data", new String(ArFileTest.readFully(file.getInputStream(file.getEntry("third.o"))), "ASCII"));
+        ArSymbolTable table = file.getSymbolTable();
+        assertEquals(3, table.size());
+        assertNull(file.getEntryBySymbol("second_function"));
+        assertEquals("first_object_with_long_name.o", file.getEntryBySymbol("shared_counter").getFilename());
+        assertEquals("third.o", file.getEntryBySymbol("third_function").getFilename());
+        file.close();
+        // symbol table and 2 entries
+        assertStreamable(archive, 3);
+    }
+
+    public void testReplaceLastEntry() throws Exception {
+        Path archive = copy("nginx_0.7.67-3ubuntu1_i386.deb");
+        ArFile original = new ArFile(archive);
+        long dataOffset = original.getEntry("data.tar.gz").getHeaderOffset();
+        original.close();
+        byte[] before = Files.readAllBytes(archive);
+
+        Path data = tempDir.resolve("data");
+        Files.write(data, "odd".getBytes("ASCII"));
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.replace(ArFileTest.createEntry("data.tar.gz", ""), data);
+        editor.commit();
+
+        byte[] after = Files.readAllBytes(archive);
+        assertEquals(dataOffset + 60 + 4, after.length);
+        assertTrue(Arrays.equals(Arrays.copyOf(before, (int) dataOffset), Arrays.copyOf(after, (int) dataOffset)));
+        ArFile file = new ArFile(archive);
+        assertEquals(3, file.size());
+        assertEquals("odd", new String(ArFileTest.readFully(file.getInputStream(file.getEntry("data.tar.gz"))), "ASCII"));
+        file.close();
+        assertStreamable(archive, 3);
+    }
+
+    public void testAppendLongFileName() throws Exception {
+        Path archive = copy("nginx_0.7.67-3ubuntu1_i386.deb");
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.replace(ArFileTest.createEntry("very_long_file_name.txt", "test"));
+        editor.replace(ArFileTest.createEntry("short", "1"));
+        editor.commit();
+
+        ArFile file = new ArFile(archive);
+        assertEquals(5, file.size());
+        assertEquals("debian-binary", file.getEntries().get(0).getFilename());
+        assertEquals("data.tar.gz", file.getEntries().get(2).getFilename());
+        assertEquals(338549, file.getEntry("data.tar.gz").getSize());
+        assertEquals("test", new String(ArFileTest.readFully(file.getInputStream(file.getEntry("very_long_file_name.txt"))), "ASCII"));
+        assertEquals("1", new String(ArFileTest.readFully(file.getInputStream(file.getEntry("short"))), "ASCII"));
+        file.close();
+        assertStreamable(archive, 5);
+    }
+
+    public void testExistingLongFileNames() throws Exception {
+        Path archive = copy("result.a");
+        long size = Files.size(archive);
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.replace(ArFileTest.createEntry("anotherlonglongfilename", "1"));
+        editor.commit();
+        assertEquals(size - 86 + 2, Files.size(archive));
+
+        editor.replace(ArFileTest.createEntry("yetanotherlonglongfilename", "2"));
+        editor.commit();
+
+        ArFile file = new ArFile(archive);
+        assertEquals(4, file.size());
+        assertEquals("some data\n\n", new String(ArFileTest.readFully(file.getInputStream(file.getEntry("filewithlonglongname"))), "ASCII"));
+        assertEquals("1", new String(ArFileTest.readFully(file.getInputStream(file.getEntry("anotherlonglongfilename"))), "ASCII"));
+        assertEquals("2", new String(ArFileTest.readFully(file.getInputStream(file.getEntry("yetanotherlonglongfilename"))), "ASCII"));
+        assertEquals(1477, file.getEntry("sname").getSize());
+        file.close();
+        assertStreamable(archive, 4);
+    }
+
+    public void testCompact() throws Exception {
+        Path archive = copy("result.a");
+        long size = Files.size(archive);
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.remove("filewithlonglongname");
+        editor.setCompact(true);
+        editor.commit();
+        // 22 bytes of the table and removed entry
+        assertEquals(size - 22 - 60 - 12, Files.size(archive));
+
+        ArFile file = new ArFile(archive);
+        assertEquals(2, file.size());
+        assertNull(file.getEntry("filewithlonglongname"));
+        assertEquals(85, file.getEntry("anotherlonglongfilename").getSize());
+        assertEquals(1477, file.getEntry("sname").getSize());
+        file.close();
+        assertStreamable(archive, 2);
+    }
+
+    public void testShift() throws Exception {
+        Path archive = copy("nginx_0.7.67-3ubuntu1_i386.deb");
+        ArFile original = new ArFile(archive);
+        byte[] control = ArFileTest.readFully(original.getInputStream(original.getEntry("control.tar.gz")));
+        byte[] data = ArFileTest.readFully(original.getInputStream(original.getEntry("data.tar.gz")));
+        original.close();
+
+        // following entries are moved towards the end by more than one buffer
+        char[] big = new char[100001];
+        Arrays.fill(big, 'a');
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.replace(ArFileTest.createEntry("debian-binary", new String(big)));
+        editor.commit();
+        assertEntries(archive, control, data);
+
+        // and back
+        editor.replace(ArFileTest.createEntry("debian-binary", "2.0\n"));
+        editor.commit();
+        assertEntries(archive, control, data);
+        assertEquals(ArFileTest.getResource("nginx_0.7.67-3ubuntu1_i386.deb").length(), Files.size(archive));
+    }
+
+    public void testRemoveUnknown() throws Exception {
+        Path archive = copy("result.a");
+        byte[] before = Files.readAllBytes(archive);
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.remove("unknown");
+        editor.commit();
+        assertTrue(Arrays.equals(before, Files.readAllBytes(archive)));
+    }
+
+    public void testInvalidArchive() throws Exception {
+        tempDir = Files.createTempDirectory("areditor");
+        Path archive = tempDir.resolve("invalid.a");
+        Files.write(archive, "not an archive".getBytes("ASCII"));
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.remove("unknown");
+        try {
+            editor.commit();
+            fail("exception expected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void assertEntries(Path archive, byte[] control, byte[] data) throws Exception {
+        ArFile file = new ArFile(archive);
+        assertEquals(3, file.size());
+        assertTrue(Arrays.equals(control, ArFileTest.readFully(file.getInputStream(file.getEntry("control.tar.gz")))));
+        assertTrue(Arrays.equals(data, ArFileTest.readFully(file.getInputStream(file.getEntry("data.tar.gz")))));
+        file.close();
+        assertStreamable(archive, 3);
+    }
+
+    private static void assertStreamable(Path archive, int expected) throws Exception {
+        ArInputStream aris = new ArInputStream(Files.newInputStream(archive));
+        int count = 0;
+        while (aris.getNextEntry() != null) {
+            count++;
+        }
+        aris.close();
+        assertEquals(expected, count);
+    }
+
+    private Path copy(String resource) throws Exception {
+        tempDir = Files.createTempDirectory("areditor");
+        Path result = tempDir.resolve(resource);
+        Files.copy(ArFileTest.getResource(resource).toPath(), result);
+        return result;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (tempDir != null) {
+            ArFileTest.delete(tempDir.toFile());
+        }
+    }
+}
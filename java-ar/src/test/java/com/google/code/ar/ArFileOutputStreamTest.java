@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
@@ -33,6 +35,205 @@ public class ArFileOutputStreamTest extends TestCase {
 		aris.close();
 	}
 
+	public void testDigests() throws IOException {
+		ArFileOutputStream fileOutput = new ArFileOutputStream(FILENAME);
+		fileOutput.setDigestAlgorithms("CRC32C");
+		ArEntry[] entries = createValidEntries();
+		for (int i = 0; i < entries.length; i++) {
+			fileOutput.putNextEntry(entries[i]);
+			fileOutput.write('a' + i);
+			byte[] data = "some data".getBytes(Charset.forName("ASCII"));
+			fileOutput.write(data, 0, data.length);
+			fileOutput.closeEntry();
+		}
+		fileOutput.close();
+
+		ArInputStream aris = new ArInputStream(new FileInputStream(FILENAME));
+		aris.setDigestAlgorithms("CRC32C");
+		for (int i = 0; i < entries.length; i++) {
+			ArEntry curEntry = aris.getNextEntry();
+			assertNotNull(entries[i].getDigest("CRC32C"));
+			assertTrue(Arrays.equals(entries[i].getDigest("CRC32C"), curEntry.getDigest("CRC32C")));
+		}
+		aris.close();
+	}
+
+	public void testSyncModes() throws IOException {
+		SyncMode[] modes = SyncMode.values();
+		for (int i = 0; i < modes.length; i++) {
+			ArFileOutputStream fileOutput = new ArFileOutputStream(FILENAME, modes[i]);
+			ArEntry[] entries = createValidEntries();
+			byte[] big = new byte[200001];
+			Arrays.fill(big, (byte) 1);
+			fileOutput.putNextEntry(entries[0]);
+			fileOutput.write(big);
+			fileOutput.putNextEntry(entries[1]);
+			fileOutput.write(3);
+			fileOutput.flush();
+			fileOutput.close();
+
+			ArInputStream aris = new ArInputStream(new FileInputStream(FILENAME));
+			ArEntry curEntry = aris.getNextEntry();
+			assertEquals(entries[0].getFilename(), curEntry.getFilename());
+			assertTrue(Arrays.equals(big, curEntry.getData()));
+			curEntry = aris.getNextEntry();
+			assertEquals(entries[1].getFilename(), curEntry.getFilename());
+			assertEquals(1, curEntry.getData().length);
+			assertEquals(3, curEntry.getData()[0]);
+			assertNull(aris.getNextEntry());
+			aris.close();
+		}
+	}
+
+	public void testAppend() throws IOException {
+		ArEntry[] entries = createValidEntries();
+		ArFileOutputStream fileOutput = new ArFileOutputStream(FILENAME, SyncMode.NONE, true);
+		fileOutput.putNextEntry(entries[0]);
+		fileOutput.write(new byte[] { 1, 2, 3 });
+		fileOutput.close();
+		long sizeBefore = new File(FILENAME).length();
+
+		fileOutput = new ArFileOutputStream(FILENAME, SyncMode.NONE, true);
+		fileOutput.putNextEntry(entries[1]);
+		fileOutput.write(new byte[] { 4, 5 });
+		fileOutput.close();
+		assertEquals(sizeBefore + 60 + 2, new File(FILENAME).length());
+
+		ArInputStream aris = new ArInputStream(new FileInputStream(FILENAME));
+		ArEntry curEntry = aris.getNextEntry();
+		assertEquals(entries[0].getFilename(), curEntry.getFilename());
+		assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, curEntry.getData()));
+		curEntry = aris.getNextEntry();
+		assertEquals(entries[1].getFilename(), curEntry.getFilename());
+		assertTrue(Arrays.equals(new byte[] { 4, 5 }, curEntry.getData()));
+		assertNull(aris.getNextEntry());
+		aris.close();
+	}
+
+	public void testAppendLongFileNames() throws Exception {
+		Files.copy(ArFileTest.getResource("result.a").toPath(), new File(FILENAME).toPath());
+		ArFileOutputStream fileOutput = new ArFileOutputStream(FILENAME, SyncMode.NONE, true);
+		ArEntry[] entries = createValidEntries();
+		entries[0].setFilename("filewithlonglongname");
+		fileOutput.putNextEntry(entries[0]);
+		fileOutput.write(new byte[] { 1 });
+		fileOutput.putNextEntry(entries[1]);
+		fileOutput.closeEntry();
+		fileOutput.close();
+
+		ArFile file = new ArFile(FILENAME);
+		assertEquals(5, file.size());
+		assertEquals("sname", file.getEntries().get(2).getFilename());
+		ArEntry appended = file.getEntries().get(3);
+		assertEquals("filewithlonglongname", appended.getFilename());
+		assertEquals(1, appended.getSize());
+		assertEquals("data.tar.gz", file.getEntries().get(4).getFilename());
+		assertEquals(0, file.getEntries().get(4).getSize());
+		file.close();
+	}
+
+	public void testWriteWithoutEntry() throws Exception {
+		ArFileOutputStream fileOutput = new ArFileOutputStream(FILENAME);
+		byte[] data = "some data".getBytes(Charset.forName("ASCII"));
+		assertWriteFails(fileOutput, data);
+		ArEntry[] entries = createValidEntries();
+		fileOutput.putNextEntry(entries[0]);
+		fileOutput.write(data, 0, data.length);
+		fileOutput.closeEntry();
+		assertWriteFails(fileOutput, data);
+		fileOutput.close();
+		assertWriteFails(fileOutput, data);
+
+		ArFile file = new ArFile(FILENAME);
+		assertEquals(1, file.size());
+		assertEquals(data.length, file.getEntries().get(0).getSize());
+		file.close();
+	}
+
+	private static void assertWriteFails(ArFileOutputStream fileOutput, byte[] data) {
+		try {
+			fileOutput.write('a');
+			fail("exception expected");
+		} catch (IOException e) {
+			//expected
+		}
+		try {
+			fileOutput.write(data, 0, data.length);
+			fail("exception expected");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	public void testTooLongNames() throws Exception {
+		Files.copy(ArFileTest.getResource("result.a").toPath(), new File(FILENAME).toPath());
+		ArFileOutputStream fileOutput = new ArFileOutputStream(FILENAME, SyncMode.NONE, true);
+		ArEntry[] entries = createValidEntries();
+		entries[0].setFilename("appended_with_a_long_name.txt");
+		try {
+			fileOutput.putNextEntry(entries[0]);
+			fail("exception expected");
+		} catch (IOException e) {
+			//expected
+		}
+		fileOutput.close();
+		ArFile file = new ArFile(FILENAME);
+		assertEquals(3, file.size());
+		file.close();
+
+		// names are truncated if archive is not appended
+		fileOutput = new ArFileOutputStream(FILENAME);
+		fileOutput.putNextEntry(entries[0]);
+		fileOutput.closeEntry();
+		fileOutput.close();
+		file = new ArFile(FILENAME);
+		assertEquals("appended_with_a", file.getEntries().get(0).getFilename());
+		file.close();
+	}
+
+	public void testAppendInvalidArchive() throws Exception {
+		Files.write(new File(FILENAME).toPath(), "not an archive".getBytes("ASCII"));
+		try {
+			new ArFileOutputStream(FILENAME, SyncMode.NONE, true);
+			fail("exception expected");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	public void testDeterministic() throws IOException {
+		byte[] first = writeDeterministic();
+		byte[] second = writeDeterministic();
+		assertTrue(Arrays.equals(first, second));
+		ArInputStream aris = new ArInputStream(new FileInputStream(FILENAME));
+		ArEntry curEntry = aris.getNextEntry();
+		assertEquals(0, curEntry.getFileModificationTimestamp());
+		assertEquals(0, curEntry.getOwnerId());
+		assertEquals(0, curEntry.getGroupId());
+		assertEquals(644, curEntry.getFileMode());
+		curEntry = aris.getNextEntry();
+		assertEquals(1281992580000l, curEntry.getFileModificationTimestamp());
+		assertNull(aris.getNextEntry());
+		aris.close();
+	}
+
+	private static byte[] writeDeterministic() throws IOException {
+		new File(FILENAME).delete();
+		ArEntry[] entries = createValidEntries();
+		entries[0].setFileModificationTimestamp(0);
+		entries[1].setFileModificationTimestamp(1281992580000l);
+		ArFileOutputStream fileOutput = new ArFileOutputStream(FILENAME);
+		fileOutput.setDeterministic(true);
+		for (int i = 0; i < entries.length; i++) {
+			fileOutput.putNextEntry(entries[i]);
+			byte[] data = "some data".getBytes(Charset.forName("ASCII"));
+			fileOutput.write(data, 0, data.length);
+			fileOutput.closeEntry();
+		}
+		fileOutput.close();
+		return Files.readAllBytes(new File(FILENAME).toPath());
+	}
+
 	private static ArEntry[] createValidEntries() {
 		ArEntry[] result = new ArEntry[2];
 		result[0] = new ArEntry();
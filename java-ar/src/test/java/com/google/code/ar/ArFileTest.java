@@ -0,0 +1,263 @@
+package com.google.code.ar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ArFileTest extends TestCase {
+
+    private Path tempDir;
+
+    public void testSuccess() throws Exception {
+        ArFile file = new ArFile(getResource("nginx_0.7.67-3ubuntu1_i386.deb"));
+        assertEquals(3, file.size());
+        assertEquals("debian-binary", file.getEntries().get(0).getFilename());
+        assertEquals("control.tar.gz", file.getEntries().get(1).getFilename());
+        assertEquals("data.tar.gz", file.getEntries().get(2).getFilename());
+        ArEntry f3 = file.getEntry("data.tar.gz");
+        assertNotNull(f3);
+        assertEquals(1281992580000l, f3.getFileModificationTimestamp());
+        assertEquals(0, f3.getGroupId());
+        assertEquals(0, f3.getOwnerId());
+        assertEquals(100644, f3.getFileMode());
+        assertEquals(338549, f3.getSize());
+        assertNull(f3.getData());
+        assertNull(file.getEntry("unknown"));
+
+        ArInputStream aris = new ArInputStream(ArFileTest.class.getClassLoader().getResourceAsStream("nginx_0.7.67-3ubuntu1_i386.deb"));
+        ArEntry curEntry = null;
+        while ((curEntry = aris.getNextEntry()) != null) {
+            ArEntry cur = file.getEntry(curEntry.getFilename());
+            assertEquals(curEntry.getHeaderOffset(), cur.getHeaderOffset());
+            assertEquals(curEntry.getDataOffset(), cur.getDataOffset());
+            assertTrue(Arrays.equals(curEntry.getData(), readFully(file.getInputStream(cur))));
+        }
+        aris.close();
+        file.close();
+    }
+
+    public void testLongFileNames() throws Exception {
+        ArFile file = new ArFile(getResource("result.a"));
+        assertEquals(3, file.size());
+        ArEntry f1 = file.getEntry("filewithlonglongname");
+        assertNotNull(f1);
+        assertEquals(1291275347000l, f1.getFileModificationTimestamp());
+        assertEquals(2222, f1.getGroupId());
+        assertEquals(233481, f1.getOwnerId());
+        assertEquals(100640, f1.getFileMode());
+        assertEquals(11, f1.getSize());
+        assertEquals("some data\n\n", new String(readFully(file.getInputStream(f1)), "ASCII"));
+        assertNotNull(file.getEntry("anotherlonglongfilename"));
+        assertEquals(1477, file.getEntry("sname").getSize());
+        file.close();
+    }
+
+    public void testConcurrentReads() throws Exception {
+        final ArFile file = new ArFile(getResource("nginx_0.7.67-3ubuntu1_i386.deb"));
+        final ArEntry entry = file.getEntry("data.tar.gz");
+        final byte[] expected = readFully(file.getInputStream(entry));
+        final Throwable[] errors = new Throwable[4];
+        Thread[] threads = new Thread[errors.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            assertTrue(Arrays.equals(expected, readFully(file.getInputStream(entry))));
+                        }
+                    } catch (Throwable e) {
+                        errors[index] = e;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertNull(errors[i]);
+        }
+        file.close();
+    }
+
+    public void testMap() throws Exception {
+        ArFile file = new ArFile(getResource("nginx_0.7.67-3ubuntu1_i386.deb"));
+        for (ArEntry cur : file.getEntries()) {
+            ByteBuffer data = file.map(cur);
+            assertTrue(data.isReadOnly());
+            assertEquals(cur.getSize(), data.remaining());
+            byte[] mapped = new byte[data.remaining()];
+            data.get(mapped);
+            assertTrue(Arrays.equals(readFully(file.getInputStream(cur)), mapped));
+        }
+        assertEquals(1, file.getMappedRegions().size());
+        file.close();
+    }
+
+    public void testMapSeveralRegions() throws Exception {
+        ArFile file = new ArFile(getResource("result.a"));
+        file.maxMappedRegionSize = 100;
+        assertEquals("some data\n\n", new String(toArray(file.map(file.getEntry("filewithlonglongname"))), "ASCII"));
+        assertEquals(85, file.map(file.getEntry("anotherlonglongfilename")).remaining());
+        assertEquals(2, file.getMappedRegions().size());
+        try {
+            file.map(file.getEntry("sname"));
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        file.close();
+    }
+
+    public void testExtractToChannel() throws Exception {
+        ArFile file = new ArFile(getResource("result.a"));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArEntry entry = file.getEntry("sname");
+        assertEquals(1477, file.extractTo(entry, Channels.newChannel(baos)));
+        assertTrue(Arrays.equals(readFully(file.getInputStream(entry)), baos.toByteArray()));
+        file.close();
+    }
+
+    public void testExtractToNonBlockingChannel() throws Exception {
+        ArFile file = new ArFile(getResource("result.a"));
+        Pipe pipe = Pipe.open();
+        pipe.sink().configureBlocking(false);
+        try {
+            file.extractTo(file.getEntry("sname"), pipe.sink());
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            //expected
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+            file.close();
+        }
+    }
+
+    public void testExtractAll() throws Exception {
+        ArFile file = new ArFile(getResource("nginx_0.7.67-3ubuntu1_i386.deb"));
+        tempDir = Files.createTempDirectory("arfile");
+        file.extractAll(tempDir);
+        for (ArEntry cur : file.getEntries()) {
+            assertTrue(Arrays.equals(readFully(file.getInputStream(cur)), Files.readAllBytes(tempDir.resolve(cur.getFilename()))));
+        }
+        //overwrite existing
+        file.extractTo(file.getEntry("debian-binary"), tempDir.resolve("data.tar.gz"));
+        assertEquals(4, Files.size(tempDir.resolve("data.tar.gz")));
+        file.close();
+    }
+
+    public void testParallelExtractAll() throws Exception {
+        ArEntry[] entries = new ArEntry[101];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new ArEntry();
+            entries[i].setFilename("file" + i + ".o");
+            entries[i].setData(("data of the file number " + i).getBytes("ASCII"));
+        }
+        entries[50].setFilename("../outside");
+        tempDir = Files.createTempDirectory("arfile");
+        Path archive = tempDir.resolve("archive.a");
+        OutputStream os = Files.newOutputStream(archive);
+        ArOutputStream aros = new ArOutputStream(os);
+        aros.setEntries(entries);
+        aros.close();
+
+        Path target = tempDir.resolve("extracted");
+        ArFile file = new ArFile(archive);
+        ArExtractionResult result = file.extractAll(target, 4);
+        file.close();
+        assertFalse(result.isSuccess());
+        assertEquals(1, result.getErrors().size());
+        assertEquals("../outside", result.getErrors().keySet().iterator().next().getFilename());
+        assertEquals(100, result.getExtracted().size());
+        for (int i = 0; i < entries.length; i++) {
+            if (i == 50) {
+                continue;
+            }
+            assertTrue(Arrays.equals(entries[i].getData(), Files.readAllBytes(target.resolve(entries[i].getFilename()))));
+        }
+    }
+
+    public void testInvalidTarget() throws Exception {
+        ArEntry entry = new ArEntry();
+        entry.setFilename("../outside");
+        try {
+            ArFile.resolveTarget(new File(".").toPath(), entry);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    public void testInvalidArchive() throws Exception {
+        try {
+            new ArFile(getResource("com/google/code/ar/ArFileTest.class"));
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (tempDir != null) {
+            delete(tempDir.toFile());
+        }
+    }
+
+    static void delete(File file) throws Exception {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        if (!file.delete()) {
+            throw new Exception("unable to delete file: " + file.getAbsolutePath());
+        }
+    }
+
+    static ArEntry createEntry(String filename, String data) throws Exception {
+        ArEntry result = new ArEntry();
+        result.setFilename(filename);
+        result.setFileMode(100644);
+        if (data != null) {
+            result.setData(data.getBytes("ASCII"));
+        }
+        return result;
+    }
+
+    static File getResource(String name) throws Exception {
+        return new File(ArFileTest.class.getClassLoader().getResource(name).toURI());
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    static byte[] readFully(InputStream is) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int curRead;
+        while ((curRead = is.read(buf)) != -1) {
+            baos.write(buf, 0, curRead);
+        }
+        is.close();
+        return baos.toByteArray();
+    }
+
+}
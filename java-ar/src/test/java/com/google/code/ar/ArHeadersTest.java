@@ -0,0 +1,145 @@
+package com.google.code.ar;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ArHeadersTest extends TestCase {
+
+    public void testParse() throws Exception {
+        ArEntry entry = ArHeaders.parse(header("debian-binary   1281992580  0     0     100644  4         `\n"), null);
+        assertEquals("debian-binary", entry.getFilename());
+        assertEquals(1281992580000l, entry.getFileModificationTimestamp());
+        assertEquals(0, entry.getOwnerId());
+        assertEquals(0, entry.getGroupId());
+        assertEquals(100644, entry.getFileMode());
+        assertEquals(4, entry.getSize());
+    }
+
+    public void testEmptyFields() throws Exception {
+        ArEntry entry = ArHeaders.parse(header("//                                              48        `\n"), null);
+        assertEquals("//", entry.getFilename());
+        assertEquals(0, entry.getFileModificationTimestamp());
+        assertEquals(48, entry.getSize());
+        assertTrue(ArHeaders.isLongFileNames(entry));
+    }
+
+    public void testBigSize() throws Exception {
+        ArEntry entry = ArHeaders.parse(header("big             0           0     0     644     9999999999`\n"), null);
+        assertEquals(9999999999l, entry.getSize());
+    }
+
+    public void testInvalidHeaders() throws Exception {
+        assertInvalid("debian-binary   1281992580  0     0     100644            `\n");
+        assertInvalid("debian-binary   1281992580  0     0     100644  4         ``");
+        assertInvalid("debian-binary   1281a92580  0     0     100644  4         `\n");
+        assertInvalid("debian-binary   1281992580  0     0     100644  4 4       `\n");
+    }
+
+    public void testLongFileNames() throws Exception {
+        LongFileNames names = new LongFileNames("filewithlonglongname/\nanotherlonglongfilename/\n  padded  /\n".getBytes("ASCII"));
+        assertEquals("filewithlonglongname", ArHeaders.parse(header("/0              1291275347  2334812222  100640  11        `\n"), names).getFilename());
+        assertEquals("anotherlonglongfilename", parseFilename("/22", names));
+        assertEquals("longfilename", parseFilename("/33", names));
+        assertEquals("padded", parseFilename("/47", names));
+        assertEquals("sname", parseFilename("sname/", names));
+        assertEquals("sname", parseFilename("sname", null));
+        assertEquals("/", parseFilename("/", names));
+        assertEquals("//", parseFilename("//", names));
+        try {
+            parseFilename("/21", names);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        try {
+            parseFilename("/100", names);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        try {
+            parseFilename("sname", names);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    public void testEncode() throws Exception {
+        ArEntry entry = new ArEntry();
+        entry.setFilename("control.tar.gz");
+        entry.setOwnerId(233481);
+        entry.setGroupId(2222);
+        entry.setFileMode(100640);
+        ArHeaderEncoder encoder = new ArHeaderEncoder(1291275347);
+        byte[] header = encoder.encode(entry.getFilename(), entry, 9999999999l);
+        assertEquals("control.tar.gz  1291275347  2334812222  100640  9999999999`\n", new String(header, "ASCII"));
+        ArEntry parsed = ArHeaders.parse(header, null);
+        assertEquals(entry.getFilename(), parsed.getFilename());
+        assertEquals(1291275347000l, parsed.getFileModificationTimestamp());
+        assertEquals(9999999999l, parsed.getSize());
+        assertEquals("//                                              48        `\n", new String(encoder.encodeLongFileNames(48), "ASCII"));
+        try {
+            encoder.encode("thisisveryverylongname", entry, 0);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        try {
+            encoder.encode(entry.getFilename(), entry, 10000000000l);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    public void testEncodeDeterministic() throws Exception {
+        ArEntry entry = new ArEntry();
+        entry.setFilename("control.tar.gz");
+        entry.setOwnerId(233481);
+        entry.setGroupId(2222);
+        entry.setFileMode(100640);
+        ArHeaderEncoder encoder = new ArHeaderEncoder(1291275347);
+        encoder.setDeterministic(true);
+        assertEquals("control.tar.gz  0           0     0     644     4         `\n", new String(encoder.encode(entry.getFilename(), entry, 4), "ASCII"));
+        entry.setFileModificationTimestamp(1281992580000l);
+        assertEquals("control.tar.gz  1281992580  0     0     644     4         `\n", new String(encoder.encode(entry.getFilename(), entry, 4), "ASCII"));
+        // output doesn't depend on the current time
+        ArHeaderEncoder later = new ArHeaderEncoder(1291275347 + 3600);
+        later.setDeterministic(true);
+        ArEntry noTimestamp = new ArEntry();
+        noTimestamp.setFilename("debian-binary");
+        assertTrue(Arrays.equals(encoder.encode(noTimestamp.getFilename(), noTimestamp, 4).clone(), later.encode(noTimestamp.getFilename(), noTimestamp, 4)));
+        encoder.setDeterministic(false);
+        assertEquals("control.tar.gz  1281992580  2334812222  100640  4         `\n", new String(encoder.encode(entry.getFilename(), entry, 4), "ASCII"));
+        entry.setFileModificationTimestamp(0);
+        assertEquals("control.tar.gz  1291275347  2334812222  100640  4         `\n", new String(encoder.encode(entry.getFilename(), entry, 4), "ASCII"));
+    }
+
+    private static void assertInvalid(String header) throws Exception {
+        try {
+            ArHeaders.parse(header(header), null);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    private static String parseFilename(String name, LongFileNames names) throws Exception {
+        StringBuilder header = new StringBuilder(name);
+        while (header.length() < 16) {
+            header.append(' ');
+        }
+        header.append("0           0     0     644     0         `\n");
+        return ArHeaders.parse(header(header.toString()), names).getFilename();
+    }
+
+    private static byte[] header(String header) throws Exception {
+        byte[] result = header.getBytes("ASCII");
+        assertEquals(ArHeaders.HEADER_LENGTH, result.length);
+        return result;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.google.code.ar;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import junit.framework.TestCase;
+
+public class ArIndexCacheTest extends TestCase {
+
+    private Path tempDir;
+
+    public void testIndex() throws Exception {
+        Path archive = copy("result.a");
+        ArIndexCache cache = new ArIndexCache(1024 * 1024);
+        assertEquals(3, cache.getEntries(archive).size());
+        assertEquals(1477, cache.getEntry(archive, "sname").getSize());
+        assertNull(cache.getEntry(archive, "unknown"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        // returned entries are copies
+        cache.getEntry(archive, "sname").setFilename("changed");
+        cache.getEntries(archive).get(2).setFilename("changed");
+        assertEquals("sname", cache.getEntries(archive).get(2).getFilename());
+        assertNotNull(cache.getEntry(archive, "sname"));
+        assertTrue(cache.getIndexBytes() > 0);
+
+        // modified archive is reloaded
+        ArFileEditor editor = new ArFileEditor(archive);
+        editor.remove("sname");
+        editor.commit();
+        Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        assertNull(cache.getEntry(archive, "sname"));
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getEntries(archive).size());
+
+        cache.invalidate(archive);
+        assertEquals(0, cache.getIndexBytes());
+        assertEquals(2, cache.getEntries(archive).size());
+        assertEquals(3, cache.getMisses());
+    }
+
+    public void testEviction() throws Exception {
+        Path first = copy("result.a");
+        Path second = tempDir.resolve("second.a");
+        Files.copy(first, second);
+        ArIndexCache cache = new ArIndexCache(1500);
+        cache.getEntries(first);
+        cache.getEntries(second);
+        assertEquals(1, cache.getEvictions());
+        cache.getEntries(second);
+        assertEquals(1, cache.getHits());
+        cache.getEntries(first);
+        assertEquals(3, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+
+        ArIndexCache tooSmall = new ArIndexCache(10);
+        tooSmall.getEntries(first);
+        assertEquals(0, tooSmall.getIndexBytes());
+        assertEquals(0, tooSmall.getEvictions());
+    }
+
+    public void testData() throws Exception {
+        Path archive = copy("result.a");
+        ArIndexCache cache = new ArIndexCache(1024 * 1024, 90, 90);
+        ByteBuffer data = cache.getData(archive, "filewithlonglongname");
+        assertTrue(data.isDirect());
+        assertTrue(data.isReadOnly());
+        assertEquals("some data\n\n", toString(data));
+        assertEquals("some data\n\n", toString(cache.getData(archive, "filewithlonglongname")));
+        assertEquals(1, cache.getDataMisses());
+        assertEquals(1, cache.getDataHits());
+        assertEquals(11, cache.getDataBytes());
+
+        // too big to be cached
+        assertEquals(1477, cache.getData(archive, "sname").remaining());
+        assertEquals(11, cache.getDataBytes());
+        assertNull(cache.getData(archive, "unknown"));
+
+        assertEquals(85, cache.getData(archive, "anotherlonglongfilename").remaining());
+        assertEquals(1, cache.getDataEvictions());
+        assertEquals(85, cache.getDataBytes());
+
+        // data of the modified archive is removed together with its index
+        Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        assertEquals(3, cache.getEntries(archive).size());
+        assertEquals(0, cache.getDataBytes());
+        assertEquals(85, cache.getData(archive, "anotherlonglongfilename").remaining());
+        assertEquals(3, cache.getDataMisses());
+    }
+
+    public void testDataRemovedWithIndex() throws Exception {
+        Path first = copy("result.a");
+        Path second = tempDir.resolve("second.a");
+        Files.copy(first, second);
+        ArIndexCache cache = new ArIndexCache(1500, 1024, 1024);
+        cache.getData(first, "filewithlonglongname");
+        assertEquals(11, cache.getDataBytes());
+        // index of the first archive is evicted
+        cache.getEntries(second);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(0, cache.getDataBytes());
+    }
+
+    private static String toString(ByteBuffer buffer) throws Exception {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return new String(result, "ASCII");
+    }
+
+    private Path copy(String resource) throws Exception {
+        tempDir = Files.createTempDirectory("arcache");
+        Path result = tempDir.resolve(resource);
+        Files.copy(ArFileTest.getResource(resource).toPath(), result);
+        return result;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (tempDir != null) {
+            ArFileTest.delete(tempDir.toFile());
+        }
+    }
+}
@@ -1,6 +1,14 @@
 package com.google.code.ar;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
 
 import junit.framework.TestCase;
 
@@ -82,4 +90,221 @@ public class ArInputStreamTest extends TestCase {
         stream.close();
     }
 
+    public void testStreaming() throws Exception {
+        InputStream file = ArInputStream.class.getClassLoader().getResourceAsStream("nginx_0.7.67-3ubuntu1_i386.deb");
+        if (file == null) {
+            throw new Exception("cannot find the file specified");
+        }
+        ArInputStream stream = new ArInputStream(file, true);
+        ArEntry f1 = stream.getNextEntry();
+        assertNotNull(f1);
+        assertEquals("debian-binary", f1.getFilename());
+        assertNull(f1.getData());
+        assertEquals(4, f1.getSize());
+        byte[] buf = new byte[16];
+        assertEquals(4, stream.read(buf));
+        assertEquals("2.0\n", new String(buf, 0, 4, "ASCII"));
+        assertEquals(-1, stream.read(buf));
+        assertEquals(-1, stream.read());
+        ArEntry f2 = stream.getNextEntry();
+        assertNotNull(f2);
+        assertEquals("control.tar.gz", f2.getFilename());
+        assertEquals(1984, f2.getSize());
+        //leave control.tar.gz data unread
+        ArEntry f3 = stream.getNextEntry();
+        assertNotNull(f3);
+        assertEquals("data.tar.gz", f3.getFilename());
+        assertEquals(338549, f3.getSize());
+        long total = 0;
+        int curRead;
+        byte[] data = new byte[4096];
+        while ((curRead = stream.read(data)) != -1) {
+            total += curRead;
+        }
+        assertEquals(338549, total);
+        assertNull(stream.getNextEntry());
+        stream.close();
+    }
+
+    public void testStreamingLongFileNames() throws Exception {
+        InputStream file = ArInputStream.class.getClassLoader().getResourceAsStream("result.a");
+        if (file == null) {
+            throw new Exception("cannot find the file specified");
+        }
+        ArInputStream stream = new ArInputStream(file, true);
+        ArEntry f1 = stream.getNextEntry();
+        assertEquals("filewithlonglongname", f1.getFilename());
+        assertEquals(11, f1.getSize());
+        assertEquals('s', stream.read());
+        ArEntry f2 = stream.getNextEntry();
+        assertEquals("anotherlonglongfilename", f2.getFilename());
+        assertEquals(85, f2.getSize());
+        ArEntry f3 = stream.getNextEntry();
+        assertEquals("sname", f3.getFilename());
+        assertEquals(1477, f3.getSize());
+        assertNull(stream.getNextEntry());
+        stream.close();
+    }
+
+    public void testDigests() throws Exception {
+        ArInputStream stream = new ArInputStream(ArInputStream.class.getClassLoader().getResourceAsStream("result.a"));
+        stream.setDigestAlgorithms("CRC32C", "SHA-256");
+        ArEntry entry = null;
+        int count = 0;
+        while ((entry = stream.getNextEntry()) != null) {
+            assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-256").digest(entry.getData()), entry.getDigest("SHA-256")));
+            CRC32C crc = new CRC32C();
+            crc.update(entry.getData());
+            assertEquals((int) crc.getValue(), ByteBuffer.wrap(entry.getDigest("CRC32C")).getInt());
+            assertNull(entry.getDigest("MD5"));
+            count++;
+        }
+        assertEquals(3, count);
+        stream.close();
+    }
+
+    public void testStreamingDigests() throws Exception {
+        ArInputStream expected = new ArInputStream(ArInputStream.class.getClassLoader().getResourceAsStream("nginx_0.7.67-3ubuntu1_i386.deb"));
+        ArInputStream stream = new ArInputStream(ArInputStream.class.getClassLoader().getResourceAsStream("nginx_0.7.67-3ubuntu1_i386.deb"), true);
+        stream.setDigestAlgorithms("SHA-256");
+        ArEntry f1 = stream.getNextEntry();
+        assertEquals('2', stream.read());
+        assertNull(f1.getDigest("SHA-256"));
+        assertEquals(3, stream.read(new byte[16]));
+        assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-256").digest(expected.getNextEntry().getData()), f1.getDigest("SHA-256")));
+        // unread and skipped data is digested as well
+        ArEntry f2 = stream.getNextEntry();
+        assertEquals(10, stream.skip(10));
+        ArEntry f3 = stream.getNextEntry();
+        assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-256").digest(expected.getNextEntry().getData()), f2.getDigest("SHA-256")));
+        assertNull(stream.getNextEntry());
+        assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-256").digest(expected.getNextEntry().getData()), f3.getDigest("SHA-256")));
+        stream.close();
+        expected.close();
+    }
+
+    public void testUnsupportedDigest() throws Exception {
+        ArInputStream stream = new ArInputStream(ArInputStream.class.getClassLoader().getResourceAsStream("result.a"));
+        try {
+            stream.setDigestAlgorithms("unknown");
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        stream.close();
+    }
+
+    public void testPartialReads() throws Exception {
+        String[] resources = new String[] { "nginx_0.7.67-3ubuntu1_i386.deb", "result.a", "libsymbols.a" };
+        for (String resource : resources) {
+            ArInputStream expected = new ArInputStream(ArInputStream.class.getClassLoader().getResourceAsStream(resource));
+            ArInputStream stream = new ArInputStream(new PipeInputStream(ArInputStream.class.getClassLoader().getResourceAsStream(resource)));
+            ArEntry cur;
+            while ((cur = expected.getNextEntry()) != null) {
+                ArEntry got = stream.getNextEntry();
+                assertNotNull(got);
+                assertEquals(cur.getFilename(), got.getFilename());
+                assertTrue(Arrays.equals(cur.getData(), got.getData()));
+            }
+            assertNull(stream.getNextEntry());
+            expected.close();
+            stream.close();
+        }
+    }
+
+    public void testTruncatedHeader() throws Exception {
+        byte[] archive = readAll(ArInputStream.class.getClassLoader().getResourceAsStream("result.a"));
+        ArInputStream stream = new ArInputStream(new PipeInputStream(new ByteArrayInputStream(archive, 0, archive.length - 1477 - 30)));
+        assertNotNull(stream.getNextEntry());
+        assertNotNull(stream.getNextEntry());
+        try {
+            stream.getNextEntry();
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        stream.close();
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int read;
+        while ((read = is.read(buf)) != -1) {
+            baos.write(buf, 0, read);
+        }
+        is.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Behaves like pipe or socket: partial reads, no skip and no available data
+     */
+    private static class PipeInputStream extends FilterInputStream {
+
+        private int next = 0;
+
+        PipeInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            next = (next + 1) % 7;
+            return super.read(b, off, Math.min(len, next + 1));
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return 0;
+        }
+    }
+
+    public void testFilter() throws Exception {
+        InputStream file = ArInputStream.class.getClassLoader().getResourceAsStream("nginx_0.7.67-3ubuntu1_i386.deb");
+        if (file == null) {
+            throw new Exception("cannot find the file specified");
+        }
+        final long[] readBytes = new long[1];
+        InputStream counting = new FilterInputStream(file) {
+
+            @Override
+            public int read() throws IOException {
+                readBytes[0]++;
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int result = super.read(b, off, len);
+                if (result > 0) {
+                    readBytes[0] += result;
+                }
+                return result;
+            }
+        };
+        ArInputStream stream = new ArInputStream(counting);
+        ArEntryFilter filter = new ArEntryFilter() {
+
+            @Override
+            public boolean accept(ArEntry entry) {
+                assertNull(entry.getData());
+                return entry.getFilename().startsWith("control.tar");
+            }
+        };
+        ArEntry f1 = stream.getNextEntry(filter);
+        assertNotNull(f1);
+        assertEquals("control.tar.gz", f1.getFilename());
+        assertEquals(1984, f1.getData().length);
+        assertNull(stream.getNextEntry(filter));
+        stream.close();
+        // signature + 3 headers + control.tar.gz
+        assertEquals(8 + 3 * 60 + 1984, readBytes[0]);
+    }
+
 }
@@ -2,6 +2,8 @@ package com.google.code.ar;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.Arrays;
 
 import junit.framework.TestCase;
@@ -52,6 +54,128 @@ public class ArOutputStreamTest extends TestCase {
         }
     }
 
+    public void testStreaming() throws Exception {
+        ArEntry[] values = createValidEntries();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArOutputStream aros = new ArOutputStream(baos);
+        aros.setLongFileNames(new String[] { values[0].getFilename() });
+        for (int i = 0; i < values.length; i++) {
+            aros.putNextEntry(values[i], values[i].getData().length);
+            aros.write(values[i].getData());
+        }
+        aros.close();
+
+        ArInputStream aris = new ArInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], aris.getNextEntry());
+        }
+        assertNull(aris.getNextEntry());
+        aris.close();
+    }
+
+    public void testDigests() throws Exception {
+        ArEntry[] values = createValidEntries();
+        ArOutputStream aros = new ArOutputStream(new ByteArrayOutputStream());
+        aros.setDigestAlgorithms("SHA-256");
+        aros.setEntries(values);
+        aros.close();
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-256").digest(values[i].getData()), values[i].getDigest("SHA-256")));
+        }
+
+        values = createValidEntries();
+        aros = new ArOutputStream(new ByteArrayOutputStream());
+        aros.setDigestAlgorithms("SHA-256");
+        aros.putNextEntry(values[1], values[1].getData().length);
+        aros.write(values[1].getData()[0]);
+        aros.write(values[1].getData(), 1, values[1].getData().length - 1);
+        try {
+            aros.setDigestAlgorithms("CRC32C");
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        assertNull(values[1].getDigest("SHA-256"));
+        aros.closeEntry();
+        assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-256").digest(values[1].getData()), values[1].getDigest("SHA-256")));
+        aros.close();
+    }
+
+    public void testDeterministic() throws Exception {
+        byte[] first = writeDeterministic();
+        assertTrue(Arrays.equals(first, writeDeterministic()));
+
+        ArInputStream aris = new ArInputStream(new ByteArrayInputStream(first));
+        ArEntry entry = aris.getNextEntry();
+        assertEquals(0, entry.getFileModificationTimestamp());
+        assertEquals(0, entry.getOwnerId());
+        assertEquals(0, entry.getGroupId());
+        assertEquals(644, entry.getFileMode());
+        entry = aris.getNextEntry();
+        assertEquals(1281992580000l, entry.getFileModificationTimestamp());
+        assertEquals(644, entry.getFileMode());
+        assertNull(aris.getNextEntry());
+        aris.close();
+    }
+
+    private static byte[] writeDeterministic() throws IOException {
+        ArEntry[] values = createValidEntries();
+        values[0].setFileModificationTimestamp(0);
+        values[1].setFileModificationTimestamp(1281992580000l);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArOutputStream aros = new ArOutputStream(baos);
+        aros.setDeterministic(true);
+        aros.setEntries(values);
+        aros.close();
+        return baos.toByteArray();
+    }
+
+    public void testStreamingShortNames() throws Exception {
+        ArEntry[] values = createValidEntries();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArOutputStream aros = new ArOutputStream(baos);
+        aros.putNextEntry(values[1], values[1].getData().length);
+        aros.write(values[1].getData());
+        aros.closeEntry();
+        try {
+            aros.putNextEntry(values[0], values[0].getData().length);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected. long name wasn't declared
+        }
+        aros.close();
+
+        ArInputStream aris = new ArInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(values[1], aris.getNextEntry());
+        assertNull(aris.getNextEntry());
+        aris.close();
+    }
+
+    public void testStreamingInvalidSize() throws Exception {
+        ArEntry[] values = createValidEntries();
+        ArOutputStream aros = new ArOutputStream(new ByteArrayOutputStream());
+        aros.putNextEntry(values[1], 2);
+        try {
+            aros.write(values[1].getData());
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        aros.write(values[1].getData(), 0, 1);
+        try {
+            aros.closeEntry();
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        try {
+            aros.setEntries(values);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
     private static ArEntry[] createValidEntries() {
         ArEntry[] result = new ArEntry[2];
         result[0] = new ArEntry();
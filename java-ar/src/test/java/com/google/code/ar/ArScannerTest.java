@@ -0,0 +1,139 @@
+package com.google.code.ar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ArScannerTest extends TestCase {
+
+    private Path tempDir;
+
+    public void testDirectory() throws Exception {
+        tempDir = Files.createTempDirectory("arscanner");
+        Path nested = Files.createDirectories(tempDir.resolve("nested"));
+        for (int i = 0; i < 20; i++) {
+            Files.copy(ArFileTest.getResource("result.a").toPath(), (i % 2 == 0 ? tempDir : nested).resolve(i + ".a"));
+        }
+        Files.copy(ArFileTest.getResource("nginx_0.7.67-3ubuntu1_i386.deb").toPath(), nested.resolve("nginx.deb"));
+        Files.write(tempDir.resolve("corrupted.a"), "!<arch>\nshort".getBytes("ASCII"));
+        Files.write(tempDir.resolve("ignored.txt"), "text".getBytes("ASCII"));
+
+        final Map<Path, List<String>> entries = new ConcurrentHashMap<Path, List<String>>();
+        final Map<Path, IOException> errors = new ConcurrentHashMap<Path, IOException>();
+        int scanned = new ArScanner(4).scan(tempDir, new ArScanListener() {
+
+            @Override
+            public void onEntry(Path archive, ArEntry entry) {
+                assertNull(entry.getData());
+                List<String> names = entries.get(archive);
+                if (names == null) {
+                    names = new ArrayList<String>();
+                    entries.put(archive, names);
+                }
+                names.add(entry.getFilename());
+            }
+
+            @Override
+            public void onError(Path archive, IOException e) {
+                errors.put(archive, e);
+            }
+        }, ".a", ".deb");
+
+        assertEquals(21, scanned);
+        assertEquals(21, entries.size());
+        assertEquals(3, entries.get(nested.resolve("1.a")).size());
+        assertEquals("filewithlonglongname", entries.get(tempDir.resolve("0.a")).get(0));
+        assertEquals("data.tar.gz", entries.get(nested.resolve("nginx.deb")).get(2));
+        assertEquals(1, errors.size());
+        assertTrue(errors.containsKey(tempDir.resolve("corrupted.a")));
+    }
+
+    public void testUnreadableDirectory() throws Exception {
+        tempDir = Files.createTempDirectory("arscanner");
+        Path nested = Files.createDirectories(tempDir.resolve("nested"));
+        Files.copy(ArFileTest.getResource("result.a").toPath(), tempDir.resolve("0.a"));
+        Files.copy(ArFileTest.getResource("result.a").toPath(), nested.resolve("1.a"));
+        nested.toFile().setReadable(false);
+        final Map<Path, IOException> errors = new ConcurrentHashMap<Path, IOException>();
+        try {
+            int scanned = new ArScanner(2).scan(tempDir, new ArScanListener() {
+
+                @Override
+                public void onEntry(Path archive, ArEntry entry) {
+                    //do nothing
+                }
+
+                @Override
+                public void onError(Path archive, IOException e) {
+                    errors.put(archive, e);
+                }
+            });
+            // permissions are ignored when running as root
+            if (!Files.isReadable(nested)) {
+                assertEquals(1, scanned);
+                assertTrue(errors.containsKey(nested));
+            }
+        } finally {
+            nested.toFile().setReadable(true);
+        }
+
+        try {
+            new ArScanner(2).scan(tempDir.resolve("unknown"), new ArScanListener() {
+
+                @Override
+                public void onEntry(Path archive, ArEntry entry) {
+                    //do nothing
+                }
+
+                @Override
+                public void onError(Path archive, IOException e) {
+                    fail("unexpected error");
+                }
+            });
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    public void testListenerFailure() throws Exception {
+        List<Path> archives = new ArrayList<Path>();
+        for (int i = 0; i < 100; i++) {
+            archives.add(ArFileTest.getResource("result.a").toPath());
+        }
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            new ArScanner(2).scanArchives(archives, new ArScanListener() {
+
+                @Override
+                public void onEntry(Path archive, ArEntry entry) {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException("test");
+                }
+
+                @Override
+                public void onError(Path archive, IOException e) {
+                    fail("unexpected error");
+                }
+            });
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        assertTrue(calls.get() < 100);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (tempDir != null) {
+            ArFileTest.delete(tempDir.toFile());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.google.code.ar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import junit.framework.TestCase;
+
+public class ArStatisticsTest extends TestCase {
+
+    private File file;
+
+    public void testArInputStream() throws Exception {
+        ArStatistics statistics = new ArStatistics();
+        ArInputStream stream = new ArInputStream(ArStatisticsTest.class.getClassLoader().getResourceAsStream("result.a"), true);
+        stream.setListener(statistics);
+        ArEntry f1 = stream.getNextEntry();
+        assertEquals(11, f1.getSize());
+        assertEquals('s', stream.read());
+        assertEquals(2, stream.skip(2));
+        assertNotNull(stream.getNextEntry());
+        assertNotNull(stream.getNextEntry());
+        assertNull(stream.getNextEntry());
+        stream.close();
+        // long file names table and 3 entries
+        assertEquals(4, statistics.getEntries());
+        assertEquals(4 * 60, statistics.getHeaderBytes());
+        assertEquals(48 + 1, statistics.getDataBytes());
+        assertEquals(10 + 85 + 1477, statistics.getSkippedBytes());
+        assertTrue(statistics.getIoNanos() > 0);
+        assertEquals(0, statistics.getSyncs());
+    }
+
+    public void testArOutputStream() throws Exception {
+        ArStatistics statistics = new ArStatistics();
+        ArOutputStream aros = new ArOutputStream(new ByteArrayOutputStream());
+        aros.setListener(statistics);
+        aros.setEntries(new ArEntry[] { ArFileTest.createEntry("thisisvery very very long name", "str"), ArFileTest.createEntry("short", "1234") });
+        aros.close();
+        assertEquals(3, statistics.getEntries());
+        assertEquals(3 * 60, statistics.getHeaderBytes());
+        assertEquals(39 + 3 + 4, statistics.getDataBytes());
+        assertEquals(0, statistics.getSkippedBytes());
+    }
+
+    public void testArFileOutputStream() throws Exception {
+        file = File.createTempFile("statistics", ".a");
+        ArStatistics statistics = new ArStatistics();
+        ArFileOutputStream afos = new ArFileOutputStream(file.getAbsolutePath(), SyncMode.PER_ENTRY);
+        afos.setListener(statistics);
+        for (int i = 0; i < 2; i++) {
+            afos.putNextEntry(ArFileTest.createEntry("file" + i, null));
+            afos.write(new byte[] { 1, 2, 3 });
+            afos.closeEntry();
+        }
+        afos.close();
+        assertEquals(2, statistics.getEntries());
+        assertEquals(6, statistics.getDataBytes());
+        // per entry and on close
+        assertEquals(3, statistics.getSyncs());
+        assertTrue(statistics.getSyncNanos() > 0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.google.code.ar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+public class ArSymbolTableTest extends TestCase {
+
+    public void testArFile() throws Exception {
+        ArFile file = new ArFile(ArFileTest.getResource("libsymbols.a"));
+        assertEquals(4, file.size());
+        ArSymbolTable table = file.getSymbolTable();
+        assertNotNull(table);
+        assertEquals(5, table.size());
+        assertTrue(table.getSymbols().contains("shared_counter"));
+        assertEquals("first_object_with_long_name.o", file.getEntryBySymbol("first_function").getFilename());
+        assertEquals("first_object_with_long_name.o", file.getEntryBySymbol("shared_counter").getFilename());
+        assertEquals("second.o", file.getEntryBySymbol("second_function").getFilename());
+        assertEquals("second.o", file.getEntryBySymbol("another_second_function").getFilename());
+        assertEquals("third.o", file.getEntryBySymbol("third_function").getFilename());
+        assertNull(file.getEntryBySymbol("hidden"));
+        assertEquals(-1, table.getHeaderOffset("hidden"));
+        file.close();
+    }
+
+    public void testNoSymbolTable() throws Exception {
+        ArFile file = new ArFile(ArFileTest.getResource("result.a"));
+        assertNull(file.getSymbolTable());
+        assertNull(file.getEntryBySymbol("first_function"));
+        file.close();
+    }
+
+    public void testArInputStream() throws Exception {
+        InputStream is = ArSymbolTableTest.class.getClassLoader().getResourceAsStream("libsymbols.a");
+        ArInputStream aris = new ArInputStream(is);
+        ArEntry entry = aris.getNextEntry();
+        assertEquals("/", entry.getFilename());
+        ArSymbolTable table = ArSymbolTable.parse(entry);
+        long offset = table.getHeaderOffset("third_function");
+        ArEntry cur = null;
+        while ((cur = aris.getNextEntry()) != null) {
+            if (cur.getHeaderOffset() == offset) {
+                break;
+            }
+        }
+        assertNotNull(cur);
+        assertEquals("third.o", cur.getFilename());
+        aris.close();
+    }
+
+    public void testSymbolTable64() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeLong(2);
+        dos.writeLong(5000000000l);
+        dos.writeLong(68);
+        dos.write("big_symbol\0small_symbol\0".getBytes("ASCII"));
+        ArEntry entry = new ArEntry();
+        entry.setFilename("/SYM64/");
+        entry.setData(baos.toByteArray());
+        ArSymbolTable table = ArSymbolTable.parse(entry);
+        assertEquals(5000000000l, table.getHeaderOffset("big_symbol"));
+        assertEquals(68, table.getHeaderOffset("small_symbol"));
+    }
+
+    public void testCorrupted() throws Exception {
+        ArEntry entry = new ArEntry();
+        entry.setFilename("/");
+        entry.setData(new byte[] { 0, 0, 0, 2, 0, 0, 0, 8 });
+        try {
+            ArSymbolTable.parse(entry);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        entry.setData(new byte[] { 0, 0, 0, 1, 0, 0, 0, 8, 'a' });
+        try {
+            ArSymbolTable.parse(entry);
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+}
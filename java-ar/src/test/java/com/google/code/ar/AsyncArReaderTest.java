@@ -0,0 +1,139 @@
+package com.google.code.ar;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class AsyncArReaderTest extends TestCase {
+
+    public void testSuccess() throws Exception {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        new AsyncArReader(ArFileTest.getResource("nginx_0.7.67-3ubuntu1_i386.deb").toPath(), null, 4096).subscribe(subscriber);
+        subscriber.await();
+        assertNull(subscriber.error);
+        ArFile file = new ArFile(ArFileTest.getResource("nginx_0.7.67-3ubuntu1_i386.deb"));
+        assertEquals(3, subscriber.data.size());
+        for (ArEntry cur : file.getEntries()) {
+            assertTrue(Arrays.equals(ArFileTest.readFully(file.getInputStream(cur)), subscriber.data.get(cur.getFilename()).toByteArray()));
+        }
+        file.close();
+        // 1 + 1 + 338549 / 4096 rounded up
+        assertEquals(85, subscriber.chunks);
+    }
+
+    public void testLongFileNames() throws Exception {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        new AsyncArReader(ArFileTest.getResource("result.a").toPath()).subscribe(subscriber);
+        subscriber.await();
+        assertNull(subscriber.error);
+        List<String> names = new ArrayList<String>(subscriber.data.keySet());
+        assertEquals(Arrays.asList("filewithlonglongname", "anotherlonglongfilename", "sname"), names);
+        assertEquals("some data\n\n", new String(subscriber.data.get("filewithlonglongname").toByteArray(), "ASCII"));
+    }
+
+    public void testBackpressure() throws Exception {
+        final CountDownLatch firstChunk = new CountDownLatch(1);
+        final List<ArChunk> received = new ArrayList<ArChunk>();
+        final Flow.Subscription[] subscriptions = new Flow.Subscription[1];
+        new AsyncArReader(ArFileTest.getResource("result.a").toPath()).subscribe(new Flow.Subscriber<ArChunk>() {
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscriptions[0] = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ArChunk item) {
+                synchronized (received) {
+                    received.add(item);
+                }
+                firstChunk.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                // do nothing
+            }
+
+            @Override
+            public void onComplete() {
+                // do nothing
+            }
+        });
+        assertTrue(firstChunk.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        synchronized (received) {
+            assertEquals(1, received.size());
+            assertEquals("filewithlonglongname", received.get(0).getEntry().getFilename());
+            assertTrue(received.get(0).isLast());
+        }
+        subscriptions[0].cancel();
+    }
+
+    public void testInvalidArchive() throws Exception {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        new AsyncArReader(Paths.get("unknown.a")).subscribe(subscriber);
+        subscriber.await();
+        assertNotNull(subscriber.error);
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<ArChunk> {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final Map<String, ByteArrayOutputStream> data = new LinkedHashMap<String, ByteArrayOutputStream>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private int chunks;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ArChunk item) {
+            chunks++;
+            ByteArrayOutputStream baos = data.get(item.getEntry().getFilename());
+            if (baos == null) {
+                assertEquals(0, item.getOffset());
+                baos = new ByteArrayOutputStream();
+                data.put(item.getEntry().getFilename(), baos);
+            }
+            assertEquals(baos.size(), item.getOffset());
+            byte[] chunk = new byte[item.getData().remaining()];
+            item.getData().get(chunk);
+            baos.write(chunk, 0, chunk.length);
+            if (item.isLast()) {
+                assertEquals(item.getEntry().getSize(), baos.size());
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            latch.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            latch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+}
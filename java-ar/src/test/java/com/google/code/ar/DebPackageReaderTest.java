@@ -0,0 +1,69 @@
+package com.google.code.ar;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+public class DebPackageReaderTest extends TestCase {
+
+    public void testControlFile() throws Exception {
+        final long[] readBytes = new long[1];
+        InputStream counting = new FilterInputStream(DebPackageReaderTest.class.getClassLoader().getResourceAsStream("nginx_0.7.67-3ubuntu1_i386.deb")) {
+
+            @Override
+            public int read() throws IOException {
+                readBytes[0]++;
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int result = super.read(b, off, len);
+                if (result > 0) {
+                    readBytes[0] += result;
+                }
+                return result;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long result = super.skip(n);
+                readBytes[0] += result;
+                return result;
+            }
+        };
+        DebPackageReader reader = new DebPackageReader(counting);
+        assertEquals("2.0", reader.getFormatVersion());
+        assertEquals("control.tar.gz", reader.getControlEntry().getFilename());
+        String control = new String(reader.getControlFile("control"), "UTF-8");
+        assertTrue(control.startsWith("Package: nginx\n"));
+        assertTrue(control.contains("Version: 0.7.67-3ubuntu1"));
+        try {
+            reader.getControl();
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+        reader.close();
+        // data.tar.gz is not read
+        assertTrue(readBytes[0] <= 8 + 60 + 4 + 60 + 1984);
+    }
+
+    public void testMissingControlFile() throws Exception {
+        DebPackageReader reader = new DebPackageReader(ArFileTest.getResource("nginx_0.7.67-3ubuntu1_i386.deb").toPath());
+        assertNull(reader.getControlFile("./unknown"));
+        reader.close();
+    }
+
+    public void testNotDebianPackage() throws Exception {
+        try {
+            new DebPackageReader(ArFileTest.getResource("result.a").toPath());
+            fail("exception expected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.google.code.ar;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+public class JfrArListenerTest extends TestCase {
+
+    private Path recordingFile;
+
+    public void testEvents() throws Exception {
+        Recording recording = new Recording();
+        recording.enable("com.google.code.ar.EntryRead");
+        recording.enable("com.google.code.ar.EntryWrite");
+        recording.start();
+
+        // the same listener is used for reading and writing
+        JfrArListener listener = new JfrArListener();
+        ArInputStream stream = new ArInputStream(JfrArListenerTest.class.getClassLoader().getResourceAsStream("nginx_0.7.67-3ubuntu1_i386.deb"), true);
+        stream.setListener(listener);
+        while (stream.getNextEntry() != null) {
+            //skip all
+        }
+        stream.close();
+
+        ArEntry entry = new ArEntry();
+        entry.setFilename("short");
+        entry.setData(new byte[] { 1, 2, 3 });
+        ArOutputStream aros = new ArOutputStream(new ByteArrayOutputStream());
+        aros.setListener(listener);
+        aros.setEntries(new ArEntry[] { entry });
+        aros.close();
+
+        recording.stop();
+        recordingFile = Files.createTempFile("ar", ".jfr");
+        recording.dump(recordingFile);
+        recording.close();
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        int read = 0;
+        int written = 0;
+        for (RecordedEvent cur : events) {
+            if (cur.getEventType().getName().equals("com.google.code.ar.EntryRead")) {
+                if (cur.getString("filename").equals("data.tar.gz")) {
+                    assertEquals(338549, cur.getLong("size"));
+                    assertEquals(338549, cur.getLong("skippedBytes"));
+                    assertEquals(0, cur.getLong("dataBytes"));
+                }
+                read++;
+            } else if (cur.getEventType().getName().equals("com.google.code.ar.EntryWrite")) {
+                assertEquals("short", cur.getString("filename"));
+                assertEquals(3, cur.getLong("dataBytes"));
+                written++;
+            }
+        }
+        assertEquals(3, read);
+        assertEquals(1, written);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (recordingFile != null) {
+            Files.deleteIfExists(recordingFile);
+        }
+    }
+}
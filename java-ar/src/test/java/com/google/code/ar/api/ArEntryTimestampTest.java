@@ -0,0 +1,65 @@
+package com.google.code.ar.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import com.google.code.ar.ArEntry;
+import com.google.code.ar.ArFile;
+import com.google.code.ar.ArFileOutputStream;
+import com.google.code.ar.ArInputStream;
+import com.google.code.ar.ArOutputStream;
+import com.google.code.ar.SyncMode;
+
+import junit.framework.TestCase;
+
+/**
+ * Uses only public API, so it is kept outside of the com.google.code.ar package
+ */
+public class ArEntryTimestampTest extends TestCase {
+
+    private static final String FILENAME = "target/timestamp.a";
+    private static final long TIMESTAMP = 1281992580000l;
+
+    public void testArOutputStream() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArOutputStream aros = new ArOutputStream(baos);
+        aros.setDeterministic(true);
+        aros.setEntries(new ArEntry[] { createEntry() });
+        aros.close();
+
+        ArInputStream aris = new ArInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(TIMESTAMP, aris.getNextEntry().getFileModificationTimestamp());
+        aris.close();
+    }
+
+    public void testArFileOutputStream() throws Exception {
+        ArFileOutputStream fileOutput = new ArFileOutputStream(FILENAME, SyncMode.NONE);
+        fileOutput.setDeterministic(true);
+        ArEntry entry = createEntry();
+        fileOutput.putNextEntry(entry);
+        fileOutput.write(entry.getData());
+        fileOutput.close();
+
+        ArFile file = new ArFile(FILENAME);
+        assertEquals(TIMESTAMP, file.getEntry("file").getFileModificationTimestamp());
+        file.close();
+    }
+
+    private static ArEntry createEntry() throws Exception {
+        ArEntry result = new ArEntry();
+        result.setFilename("file");
+        result.setFileMode(644);
+        result.setFileModificationTimestamp(TIMESTAMP);
+        result.setData("some data".getBytes("ASCII"));
+        return result;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File file = new File(FILENAME);
+        if (file.exists() && !file.delete()) {
+            throw new Exception("unable to delete: " + FILENAME);
+        }
+    }
+}